@@ -0,0 +1,30 @@
+
+/**
+ * The Interface AnswerChangeListener.
+ *
+ * Property of University of Northern Iowa
+ *
+ * A consumer in All mode that keeps its own state and wants each answer as an
+ * event instead of a participant : index : value map.  The hub remembers
+ * every participant's last answers anyway, so each event carries the value the
+ * widget had before: null the first time a participant answers, the old value
+ * when the answer changed.  An event is sent for every widget of every answer
+ * the participant submits, even if the value did not change.
+ *
+ * When a consumer implements this, onAnswer() is called instead of
+ * inputData() for its All answers; Count and Avg still arrive as before.
+ *
+ */
+public interface AnswerChangeListener {
+
+	/**
+	 * Called for each widget of an answer a participant submitted.
+	 *
+	 * @param group the group identifier
+	 * @param participant the participant
+	 * @param widgetIndex the widget index
+	 * @param previousValue what the participant had answered before, or null if this is their first answer
+	 * @param newValue the answer
+	 */
+	public void onAnswer(String group, String participant, int widgetIndex, String previousValue, String newValue);
+}
@@ -13,7 +13,10 @@ import java.util.TreeSet;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
-public class BarGraph extends JPanel implements ClickerConsumerInterface{
+public class BarGraph extends JPanel implements ClickerConsumerInterface, ReusableConsumer{
+
+	/** What this consumer declares; the hub reads it without constructing the consumer. */
+	public static final String CONSUMPTION_DECLARATION = "BarGraph`/:Count";
 
 	private boolean running;
 	private ConsumerFrame parent;
@@ -80,7 +83,7 @@ public class BarGraph extends JPanel implements ClickerConsumerInterface{
 	 */
 	@Override
 	public String declareConsumptions() {
-		return "BarGraph`/:Count";
+		return CONSUMPTION_DECLARATION;
 	}
 	
 	/**
@@ -94,6 +97,18 @@ public class BarGraph extends JPanel implements ClickerConsumerInterface{
 		}
 	}
 
+	/**
+	 * Hides the frame without disposing it, so the hub can reuse this consumer for the next question.
+	 */
+	@Override
+	public void reset() {
+		endGraph();
+		currentQuestion = "";
+		size = 0;
+		participantCount = 0;
+		initializeGraph();
+	}
+
 	@Override
 	public boolean getActiveStatus() {
 		return running;
@@ -201,13 +216,9 @@ public class BarGraph extends JPanel implements ClickerConsumerInterface{
 	@Override
 	public void setQuestion(String question) {
 		currentQuestion = question;
-		String[] questionParts = question.split("`/&");
-		String[] groupParts = questionParts[2].split("`/,");
-		for(String s : groupParts){
-			String[] st = s.split("`/:");
-			if(st[0].equals(groupID)){
-				participantCount = Integer.parseInt(st[1]);
-			}
+		QuestionDescriptor descriptor = QuestionDescriptor.forQuestion(question);
+		if(descriptor.getGroups().containsKey(groupID)){
+			participantCount = descriptor.getParticipantCount(groupID);
 		}
 		startGraph();
 	}
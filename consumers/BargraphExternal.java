@@ -41,6 +41,10 @@ public class BargraphExternal extends JPanel{
 	private BufferedReader in;
 	private ServerSocket s;
 	private boolean runRead;
+	private static final String EXTERNAL_SEPARATOR = "`!:";
+	private ProtocolTokenizer inputParts = new ProtocolTokenizer();//only used by the reading thread
+	private ProtocolTokenizer answers = new ProtocolTokenizer();//only used by the reading thread
+	private ProtocolTokenizer parts = new ProtocolTokenizer();//only used by the reading thread
 	
 	public BargraphExternal(){
 		System.out.println("external started");
@@ -81,15 +85,20 @@ public class BargraphExternal extends JPanel{
 					try{
 						String input = in.readLine();
 						
-						String[] inputParts = input.split("`!:");
-						if(inputParts[0].equalsIgnoreCase("ID") ){
-							setID(inputParts[1]);
-						} else if(inputParts[0].equalsIgnoreCase("STATUS")){
-							setActiveStatus(Boolean.parseBoolean(inputParts[1]));
-						} else if (inputParts[0].equalsIgnoreCase("QUESTION")){
-							setQuestion(inputParts[1]);
-						} else if (inputParts[0].equalsIgnoreCase("ANSWERS")){
-							inputData(inputParts[1]);
+						inputParts.reset(input, EXTERNAL_SEPARATOR);
+						inputParts.next();
+						if(inputParts.tokenEqualsIgnoreCase("ID") ){
+							inputParts.next();
+							setID(inputParts.token());
+						} else if(inputParts.tokenEqualsIgnoreCase("STATUS")){
+							inputParts.next();
+							setActiveStatus(inputParts.tokenEqualsIgnoreCase("true"));
+						} else if (inputParts.tokenEqualsIgnoreCase("QUESTION")){
+							inputParts.next();
+							setQuestion(inputParts.token());
+						} else if (inputParts.tokenEqualsIgnoreCase("ANSWERS")){
+							inputParts.next();
+							inputData(inputParts.token());
 						} else {
 							System.out.println("Unknonwn answer received: "+input);
 						}
@@ -165,10 +174,14 @@ public class BargraphExternal extends JPanel{
 	
 	public void inputData(String input) {//  Person name, index#, value
 		synchronized(currentValueMap){
-			String[] answers = input.split(";");
-			for (String answer : answers){
-				String[] parts = answer.split(",");
-				currentValueMap.put(parts[0], parts[1]);
+			answers.reset(input, ";");
+			while (answers.next()){
+				parts.resetToField(answers, ",");
+				parts.next();
+				String label = parts.token();
+				if(parts.next()){
+					currentValueMap.put(label, parts.token());
+				}
 			}
 //			Iterator i = input.keySet().iterator();
 //			String iNext = "";
@@ -278,13 +291,9 @@ public class BargraphExternal extends JPanel{
 	
 	public void setQuestion(String question) {
 		currentQuestion = question;
-		String[] questionParts = question.split("`/&");
-		String[] groupParts = questionParts[2].split("`/,");
-		for(String s : groupParts){
-			String[] st = s.split("`/:");
-			if(st[0].equals(groupID)){
-				participantCount = Integer.parseInt(st[1]);
-			}
+		QuestionDescriptor descriptor = QuestionDescriptor.forQuestion(question);
+		if(descriptor.getGroups().containsKey(groupID)){
+			participantCount = descriptor.getParticipantCount(groupID);
 		}
 		startGraph();
 		
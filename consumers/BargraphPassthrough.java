@@ -7,7 +7,10 @@ import java.util.Iterator;
 import java.util.Map;
 
 
-public class BargraphPassthrough implements ClickerConsumerInterface {
+public class BargraphPassthrough implements ClickerConsumerInterface, BatchConsumer {
+
+	/** What this consumer declares; the hub reads it without constructing the consumer. */
+	public static final String CONSUMPTION_DECLARATION = "BarGraphPassthrough`/:Count";
 
 	private boolean status;
 	private PrintWriter pw;
@@ -45,7 +48,7 @@ public class BargraphPassthrough implements ClickerConsumerInterface {
 
 	@Override
 	public String declareConsumptions() {
-		return "BarGraphPassthrough`/:Count";
+		return CONSUMPTION_DECLARATION;
 	}
 
 	@Override
@@ -79,6 +82,12 @@ public class BargraphPassthrough implements ClickerConsumerInterface {
 		sendMessage(toSend);
 	}
 
+	@Override
+	public void inputBatch(DeliveryBatch batch) {
+		//only the latest counts of a burst are worth a frame
+		inputData(batch.getLatest().toMap());
+	}
+
 	@Override
 	public void setQuestion(String question) {
 		sendMessage("QUESTION`!:"+question);
@@ -0,0 +1,27 @@
+
+/**
+ * The Interface BatchConsumer.
+ *
+ * Property of University of Northern Iowa
+ *
+ * A consumer that would rather take a burst of deliveries in one call, for
+ * example to repaint, write to a socket or flush a log once per burst instead
+ * of once per answer.  When a consumer implements this, inputBatch() is called
+ * instead of inputData() or the typed callbacks: its mailbox waits up to the
+ * linger time for deliveries to pile up, then hands over everything waiting,
+ * up to the maximum batch size, in order.  Count and Avg consumers still only
+ * get the latest snapshot of the burst.
+ *
+ * The linger time and batch size are set with -Dimp.batch.linger (milliseconds)
+ * and -Dimp.batch.size.
+ *
+ */
+public interface BatchConsumer {
+
+	/**
+	 * Called with the deliveries that arrived since the last batch.
+	 *
+	 * @param batch the deliveries, oldest first; never empty
+	 */
+	public void inputBatch(DeliveryBatch batch);
+}
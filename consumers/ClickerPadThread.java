@@ -9,7 +9,11 @@ import java.util.Iterator;
 import java.util.Map;
 
 
-public class ClickerPadThread implements ClickerConsumerInterface {
+public class ClickerPadThread implements ClickerConsumerInterface, NeedsPlatformThread, AnswerChangeListener {
+
+	/** What this consumer declares; the hub reads it without constructing the consumer. */
+	public static final String CONSUMPTION_DECLARATION = "MouseControl`/:All";
+
 	/*
 	 * 	0xy			mouse move
 	1##			mouse button
@@ -260,7 +264,7 @@ public class ClickerPadThread implements ClickerConsumerInterface {
 	@Override
 	public String declareConsumptions() {
 		// TODO Auto-generated method stub
-		return "MouseControl`/:All";
+		return CONSUMPTION_DECLARATION;
 	}
 
 	@Override
@@ -280,31 +284,52 @@ public class ClickerPadThread implements ClickerConsumerInterface {
 		//name : index[] : answer
 		Iterator<String> nameIterator = input.keySet().iterator();
 		Map<String, String> indexToAnswers = input.get(nameIterator.next());
-		String[] data = indexToAnswers.get("0").split(COLON_SEPARATOR);
+		control(indexToAnswers.get("0"));
+	}
+
+	@Override
+	public void onAnswer(String group, String participant, int widgetIndex, String previousValue, String newValue) {
+		//every answer is a pad event, whether or not it repeats the last one
+		if(widgetIndex == 0){
+			control(newValue);
+		}
+	}
+
+	/**
+	 * Moves or clicks the mouse for one pad event.
+	 *
+	 * @param event the event, type`/:values
+	 */
+	private void control(String event) {
+		ProtocolTokenizer data = new ProtocolTokenizer(event, COLON_SEPARATOR);
+		data.next();
 		
-				if (data[0].equals("0")) { //mouse move event
-					int xMove = Integer.parseInt(data[1]);
-					int yMove = Integer.parseInt(data[2]);
+				if (data.tokenEquals("0")) { //mouse move event
+					data.next();
+					int xMove = data.tokenToInt();
+					data.next();
+					int yMove = data.tokenToInt();
 					Point p = MouseInfo.getPointerInfo().getLocation();
 					int x = p.x;
 					int y = p.y;
 					r.mouseMove(x + xMove, y + yMove);
-				} else if (data[0].equals("1")){ //mouse button event
-					if (data[2].equals("0")){ //left mouse click
+				} else if (data.tokenEquals("1")){ //mouse button event
+					data.nextAt(1);
+					if (data.tokenEquals("0")){ //left mouse click
 						r.mousePress(InputEvent.BUTTON1_MASK);
 						r.waitForIdle();
 						r.mouseRelease(InputEvent.BUTTON1_MASK);
-					} else if(data[2].equals("1")){//right mouse click
+					} else if(data.tokenEquals("1")){//right mouse click
 						r.mousePress(InputEvent.BUTTON3_MASK);
 						r.waitForIdle();
 						r.mouseRelease(InputEvent.BUTTON3_MASK);
-					} else if(data[2].equals("2")){//left mouse down
+					} else if(data.tokenEquals("2")){//left mouse down
 						r.mousePress(InputEvent.BUTTON1_MASK);
-					} else if(data[2].equals("3")){//left mouse up
+					} else if(data.tokenEquals("3")){//left mouse up
 						r.mouseRelease(InputEvent.BUTTON1_MASK);
-					} else if(data[2].equals("4")){//right mouse down
+					} else if(data.tokenEquals("4")){//right mouse down
 						r.mousePress(InputEvent.BUTTON3_MASK);
-					} else if(data[2].equals("5")){//right mouse up
+					} else if(data.tokenEquals("5")){//right mouse up
 						r.mouseRelease(InputEvent.BUTTON3_MASK);
 					}
 				}
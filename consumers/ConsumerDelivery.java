@@ -0,0 +1,30 @@
+
+import java.util.Map;
+
+
+/**
+ * The Interface ConsumerDelivery.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Something the hub hands to a consumer: a count or average snapshot, or one
+ * participant's answers.  Deliveries are immutable and shared by every
+ * consumer that receives them.
+ *
+ */
+public interface ConsumerDelivery {
+
+	/**
+	 * Calls the consumer's callback for this kind of delivery.
+	 *
+	 * @param consumer the consumer
+	 */
+	public void deliverTo(TypedClickerConsumer consumer);
+
+	/**
+	 * Gets the delivery in the form inputData() takes.
+	 *
+	 * @return the map
+	 */
+	public Map<String, Map<String, String>> toMap();
+}
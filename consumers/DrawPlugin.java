@@ -7,6 +7,10 @@ import javax.swing.JPanel;
 
 
 public class DrawPlugin implements ClickerConsumerInterface{
+
+	/** What this consumer declares; the hub reads it without constructing the consumer. */
+	public static final String CONSUMPTION_DECLARATION = "drawing";
+
 	private boolean running;
 	private ConsumerFrame parent;
 	private JFrame jf;
@@ -27,7 +31,7 @@ public class DrawPlugin implements ClickerConsumerInterface{
 	@Override
 	public String declareConsumptions() {
 		// TODO Auto-generated method stub
-		return "drawing";
+		return CONSUMPTION_DECLARATION;
 	}
 
 	@Override
@@ -3,7 +3,11 @@ import java.util.Map;
 import java.util.Set;
 
 
-public class EchoPlugin implements ClickerConsumerInterface{
+public class EchoPlugin implements ClickerConsumerInterface, AnswerChangeListener{
+
+	/** What this consumer declares; the hub reads it without constructing the consumer. */
+	public static final String CONSUMPTION_DECLARATION = "Echo";
+
 	private boolean running;
 	private ConsumerFrame parent;
 	private String currentQuestion;
@@ -20,7 +24,7 @@ public class EchoPlugin implements ClickerConsumerInterface{
 	@Override
 	public String declareConsumptions() {
 		// TODO Auto-generated method stub
-		return "Echo";
+		return CONSUMPTION_DECLARATION;
 	}
 
 	@Override
@@ -59,6 +63,15 @@ public class EchoPlugin implements ClickerConsumerInterface{
 		
 	}
 
+	@Override
+	public void onAnswer(String group, String participant, int widgetIndex, String previousValue, String newValue) {
+		if(previousValue == null){
+			System.out.println(participant + ": " + widgetIndex + " = " + newValue);
+		} else if(!previousValue.equals(newValue)){
+			System.out.println(participant + ": " + widgetIndex + " " + previousValue + " -> " + newValue);
+		}
+	}
+
 	@Override
 	public void setID(String id) {
 		// TODO Auto-generated method stub
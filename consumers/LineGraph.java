@@ -9,7 +9,10 @@ import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
-public class LineGraph extends JPanel implements ClickerConsumerInterface {
+public class LineGraph extends JPanel implements TypedClickerConsumer, ReusableConsumer {
+
+	/** What this consumer declares; the hub reads it without constructing the consumer. */
+	public static final String CONSUMPTION_DECLARATION = "LineGraph`/:Avg`/:2";
 
 	private String currentQuestion;
 	private JFrame parentFrame;
@@ -142,7 +145,7 @@ public class LineGraph extends JPanel implements ClickerConsumerInterface {
 
 	@Override
 	public String declareConsumptions() {
-		return "LineGraph`/:Avg`/:2";
+		return CONSUMPTION_DECLARATION;
 	}
 
 	@Override
@@ -153,6 +156,19 @@ public class LineGraph extends JPanel implements ClickerConsumerInterface {
 		}
 	}
 
+	/**
+	 * Hides the frame without disposing it, so the hub can reuse this consumer for the next question.
+	 */
+	@Override
+	public void reset() {
+		parentFrame.setVisible(false);
+		promptCount = 0;
+		value1 = 0f;
+		value2 = 0f;
+		currentQuestion = "";
+		initializeGraph();
+	}
+
 	@Override
 	public boolean getActiveStatus() {
 		return false;
@@ -174,6 +190,23 @@ public class LineGraph extends JPanel implements ClickerConsumerInterface {
 		repaint();
 	}
 
+	@Override
+	public void averagesChanged(AverageSnapshot averages) {
+		if(averages.getAnswerCount(0) > 0 && averages.getAnswerCount(1) > 0){
+			value1 = (float) averages.getAverage(0);
+			value2 = (float) averages.getAverage(1);
+		}
+		repaint();
+	}
+
+	@Override
+	public void countsChanged(CountSnapshot counts) {
+	}
+
+	@Override
+	public void answerReceived(AnswerRecord answer) {
+	}
+
 	@Override
 	public void setQuestion(String question) {
 		currentQuestion = question;
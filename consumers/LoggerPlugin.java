@@ -6,7 +6,10 @@ import java.sql.Timestamp;
 import java.util.Map;
 
 
-public class LoggerPlugin implements ClickerConsumerInterface{
+public class LoggerPlugin implements ClickerConsumerInterface, BatchConsumer{
+
+	/** What this consumer declares; the hub reads it without constructing the consumer. */
+	public static final String CONSUMPTION_DECLARATION = "Logging";
 
 	private PrintWriter pw;
 	private boolean running;
@@ -25,7 +28,7 @@ public class LoggerPlugin implements ClickerConsumerInterface{
 
 	@Override
 	public String declareConsumptions() {
-		return "Logging";
+		return CONSUMPTION_DECLARATION;
 	}
 
 	@Override
@@ -68,6 +71,18 @@ public class LoggerPlugin implements ClickerConsumerInterface{
 		pw.flush();
 	}
 
+	@Override
+	public void inputBatch(DeliveryBatch batch) {
+		//one write for the whole burst
+		String time = new Timestamp(System.currentTimeMillis()).toString();
+		StringBuilder lines = new StringBuilder();
+		for(Map<String, Map<String, String>> input : batch.toMaps()){
+			lines.append(time).append(": ").append(input).append(System.getProperty("line.separator"));
+		}
+		pw.print(lines);
+		pw.flush();
+	}
+
 	@Override
 	public void setID(String id) {
 		// TODO Auto-generated method stub
@@ -0,0 +1,363 @@
+
+/**
+ * The Class ProtocolTokenizer.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Walks a message from the server one field at a time without splitting it.
+ * Fields on the wire are separated by multi-character delimiters
+ * ("`/;", "`/,", "`/&", "`/:", "`/~"), and each call to next() only moves the
+ * start and end offsets of the current field, so no regex, String[] or
+ * substring is built unless the caller asks for one with token().
+ *
+ * Like String.split(), trailing empty fields are not reported, however many
+ * there are; an empty message has one empty field.
+ *
+ * A tokenizer is not thread safe.  Keep one per reading thread and reset()
+ * it for every message.
+ *
+ */
+public class ProtocolTokenizer {
+
+	//delimiters
+	public static final String SEMI_COLON_SEPARATOR = "`/;";
+
+	public static final String COMMA_SEPARATOR      = "`/,";
+
+	public static final String AMPERSAND_SEPARATOR  = "`/&";
+
+	public static final String COLON_SEPARATOR      = "`/:";
+
+	public static final String TILDE_SEPARATOR      = "`/~";
+
+	/** The message being walked. */
+	private CharSequence source;
+
+	/** The delimiter between fields. */
+	private String delimiter;
+
+	/** Where the walk started, inclusive. */
+	private int from;
+
+	/** Where the walk stops, exclusive. */
+	private int limit;
+
+	/** Start of the next field, or -1 once the message is exhausted. */
+	private int position;
+
+	/** Start of the current field. */
+	private int start;
+
+	/** End of the current field, exclusive. */
+	private int end;
+
+	/**
+	 * Instantiates a new protocol tokenizer with nothing to walk.
+	 */
+	public ProtocolTokenizer(){
+		source = "";
+		delimiter = SEMI_COLON_SEPARATOR;
+		position = -1;
+	}
+
+	/**
+	 * Instantiates a new protocol tokenizer over the whole message.
+	 *
+	 * @param source the message
+	 * @param delimiter the delimiter between fields
+	 */
+	public ProtocolTokenizer(CharSequence source, String delimiter){
+		reset(source, delimiter);
+	}
+
+	/**
+	 * Starts walking a new message.
+	 *
+	 * @param source the message
+	 * @param delimiter the delimiter between fields
+	 * @return this tokenizer
+	 */
+	public ProtocolTokenizer reset(CharSequence source, String delimiter){
+		return reset(source, 0, source.length(), delimiter);
+	}
+
+	/**
+	 * Starts walking the given region of a message.
+	 *
+	 * @param source the message
+	 * @param from start of the region, inclusive
+	 * @param to end of the region, exclusive
+	 * @param delimiter the delimiter between fields
+	 * @return this tokenizer
+	 */
+	public ProtocolTokenizer reset(CharSequence source, int from, int to, String delimiter){
+		this.source = source;
+		this.delimiter = delimiter;
+		this.from = from;
+		this.limit = to;
+		this.position = from;
+		this.start = from;
+		this.end = from;
+		return this;
+	}
+
+	/**
+	 * Starts walking the current field of another tokenizer, split on a
+	 * different delimiter.
+	 *
+	 * @param parent the tokenizer positioned on the field to walk
+	 * @param delimiter the delimiter between sub-fields
+	 * @return this tokenizer
+	 */
+	public ProtocolTokenizer resetToField(ProtocolTokenizer parent, String delimiter){
+		return reset(parent.source, parent.start, parent.end, delimiter);
+	}
+
+	/**
+	 * Advances to the next field.
+	 *
+	 * @return true, if there was another field
+	 */
+	public boolean next(){
+		if(position < 0 || (limit != from && onlyDelimitersFrom(position))){
+			position = -1;
+			return false;
+		}
+		start = position;
+		int found = indexOf(source, delimiter, position, limit);
+		if(found < 0){
+			end = limit;
+			position = -1;
+		} else {
+			end = found;
+			position = found + delimiter.length();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if nothing but delimiters is left from an offset to the end of the
+	 * region, so every field still to come is a trailing empty one.
+	 *
+	 * @param offset where to look from
+	 * @return true, if only delimiters are left
+	 */
+	private boolean onlyDelimitersFrom(int offset){
+		int delimiterLength = delimiter.length();
+		while(offset < limit){
+			if(delimiterLength == 0 || offset + delimiterLength > limit || indexOf(source, delimiter, offset, offset + delimiterLength) != offset){
+				return false;
+			}
+			offset += delimiterLength;
+		}
+		return true;
+	}
+
+	/**
+	 * Advances past the given number of fields.
+	 *
+	 * @param count how many fields to skip
+	 * @return true, if every field was there
+	 */
+	public boolean skip(int count){
+		for(int i = 0; i < count; i++){
+			if(!next()){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Advances to the field at the given index, counted from the current position.
+	 *
+	 * @param index the field index
+	 * @return true, if the field exists
+	 */
+	public boolean nextAt(int index){
+		return skip(index) && next();
+	}
+
+	/**
+	 * Gets the message being walked.
+	 *
+	 * @return the source
+	 */
+	public CharSequence source(){
+		return source;
+	}
+
+	/**
+	 * Start of the current field.
+	 *
+	 * @return the offset into the source
+	 */
+	public int start(){
+		return start;
+	}
+
+	/**
+	 * End of the current field, exclusive.
+	 *
+	 * @return the offset into the source
+	 */
+	public int end(){
+		return end;
+	}
+
+	/**
+	 * Length of the current field.
+	 *
+	 * @return the length
+	 */
+	public int length(){
+		return end - start;
+	}
+
+	/**
+	 * Gets everything from the start of the current field to the end of the
+	 * region, delimiters included.
+	 *
+	 * @return the remainder
+	 */
+	public String rest(){
+		return substring(source, start, limit);
+	}
+
+	/**
+	 * Builds a String for the current field.  This is the only call that allocates.
+	 *
+	 * @return the current field
+	 */
+	public String token(){
+		return substring(source, start, end);
+	}
+
+	/**
+	 * Compares the current field to a value without building it.
+	 *
+	 * @param value the value
+	 * @return true, if equal
+	 */
+	public boolean tokenEquals(CharSequence value){
+		return regionMatches(false, value);
+	}
+
+	/**
+	 * Compares the current field to a value without building it, ignoring case.
+	 *
+	 * @param value the value
+	 * @return true, if equal ignoring case
+	 */
+	public boolean tokenEqualsIgnoreCase(CharSequence value){
+		return regionMatches(true, value);
+	}
+
+	/**
+	 * Parses the current field as a decimal integer, the same way
+	 * Integer.parseInt() would but without building the String.
+	 *
+	 * @return the value
+	 * @throws NumberFormatException if the field is not an integer
+	 */
+	public int tokenToInt(){
+		int i = start;
+		boolean negative = false;
+		if(i < end && (source.charAt(i) == '-' || source.charAt(i) == '+')){
+			negative = source.charAt(i) == '-';
+			i++;
+		}
+		if(i >= end){
+			throw new NumberFormatException("For input string: \"" + token() + "\"");
+		}
+		long value = 0;
+		for(; i < end; i++){
+			int digit = source.charAt(i) - '0';
+			if(digit < 0 || digit > 9){
+				throw new NumberFormatException("For input string: \"" + token() + "\"");
+			}
+			value = value * 10 + digit;
+			if(value > (long)Integer.MAX_VALUE + 1){
+				throw new NumberFormatException("For input string: \"" + token() + "\"");
+			}
+		}
+		if(negative){
+			value = -value;
+		}
+		if(value > Integer.MAX_VALUE){
+			throw new NumberFormatException("For input string: \"" + token() + "\"");
+		}
+		return (int)value;
+	}
+
+	/**
+	 * Compares the current field to a value.
+	 *
+	 * @param ignoreCase whether to ignore case
+	 * @param value the value
+	 * @return true, if the field matches
+	 */
+	private boolean regionMatches(boolean ignoreCase, CharSequence value){
+		int length = end - start;
+		if(value.length() != length){
+			return false;
+		}
+		for(int i = 0; i < length; i++){
+			char a = source.charAt(start + i);
+			char b = value.charAt(i);
+			if(a != b){
+				if(!ignoreCase || (Character.toUpperCase(a) != Character.toUpperCase(b)
+						&& Character.toLowerCase(a) != Character.toLowerCase(b))){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds a delimiter within a region of a message.
+	 *
+	 * @param source the message
+	 * @param delimiter the delimiter
+	 * @param from start of the region, inclusive
+	 * @param to end of the region, exclusive
+	 * @return the offset of the delimiter, or -1 if it is not there
+	 */
+	public static int indexOf(CharSequence source, String delimiter, int from, int to){
+		int delimiterLength = delimiter.length();
+		if(delimiterLength == 0){
+			return -1;
+		}
+		char first = delimiter.charAt(0);
+		int last = to - delimiterLength;
+		search:
+		for(int i = from; i <= last; i++){
+			if(source.charAt(i) != first){
+				continue;
+			}
+			for(int j = 1; j < delimiterLength; j++){
+				if(source.charAt(i + j) != delimiter.charAt(j)){
+					continue search;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Builds a String for a region of a message.
+	 *
+	 * @param source the message
+	 * @param from start of the region, inclusive
+	 * @param to end of the region, exclusive
+	 * @return the region
+	 */
+	private static String substring(CharSequence source, int from, int to){
+		if(source instanceof String){
+			return ((String) source).substring(from, to);
+		}
+		return source.subSequence(from, to).toString();
+	}
+}
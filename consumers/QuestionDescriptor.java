@@ -0,0 +1,343 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The Class QuestionDescriptor.
+ *
+ * Property of University of Northern Iowa
+ *
+ * An "Open" message from the server, parsed once.  Expecting:
+ *
+ * Open`/;ID`/;text`/;type`/:label`/:value`/,type`/:label`/:option`/~option`/&consumer`/,consumer`/&group`/:count`/,group`/:count
+ *
+ * Instances are immutable.  forQuestion() keeps the most recent ones, so the
+ * hub and every consumer handed the same Open message share one descriptor
+ * instead of each splitting the raw string again.
+ *
+ */
+public class QuestionDescriptor {
+
+	/** How many recent questions forQuestion() remembers. */
+	private static final int CACHE_SIZE = 16;
+
+	/** Recently parsed questions. */
+	private static final Map<String, QuestionDescriptor> cache = new LinkedHashMap<String, QuestionDescriptor>(CACHE_SIZE, 0.75f, true){
+		protected boolean removeEldestEntry(Map.Entry<String, QuestionDescriptor> eldest){
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/** The raw Open message. */
+	private final String raw;
+
+	/** The message type, "Open" or "OpenClickPad". */
+	private final String type;
+
+	/** The question ID. */
+	private final String questionID;
+
+	/** The question text. */
+	private final String text;
+
+	/** The widgets, in index order. */
+	private final List<Widget> widgets;
+
+	/** The consumers the question asks for. */
+	private final List<String> consumers;
+
+	/** The groups answering, and how many participants each has. */
+	private final Map<String, Integer> groups;	//group identifier, participant count
+
+	/**
+	 * Gets the descriptor of a question, parsing it only if it has not been seen recently.
+	 *
+	 * @param question the Open message
+	 * @return the descriptor
+	 */
+	public static QuestionDescriptor forQuestion(String question){
+		synchronized(cache){
+			QuestionDescriptor descriptor = cache.get(question);
+			if(descriptor == null){
+				descriptor = new QuestionDescriptor(question);
+				cache.put(question, descriptor);
+			}
+			return descriptor;
+		}
+	}
+
+	/**
+	 * Instantiates a new question descriptor.
+	 *
+	 * @param question the Open message
+	 */
+	private QuestionDescriptor(String question){
+		raw = question;
+		ProtocolTokenizer sections = new ProtocolTokenizer(question, ProtocolTokenizer.AMPERSAND_SEPARATOR);
+		ProtocolTokenizer fields = new ProtocolTokenizer();
+		ProtocolTokenizer parts = new ProtocolTokenizer();
+
+		String type = "";
+		String questionID = "";
+		String text = "";
+		List<Widget> widgets = new ArrayList<Widget>();
+		if(sections.next()){
+			fields.resetToField(sections, ProtocolTokenizer.SEMI_COLON_SEPARATOR);
+			if(fields.next()){
+				type = fields.token();
+			}
+			if(fields.next()){
+				questionID = fields.token();
+			}
+			if(fields.next()){
+				text = fields.token();
+			}
+			if(fields.next()){
+				ProtocolTokenizer widgetList = new ProtocolTokenizer().resetToField(fields, ProtocolTokenizer.COMMA_SEPARATOR);
+				while(widgetList.next()){
+					parts.resetToField(widgetList, ProtocolTokenizer.COLON_SEPARATOR);
+					widgets.add(new Widget(widgets.size(), parts));
+				}
+			}
+		}
+		List<String> consumers = new ArrayList<String>();
+		if(sections.next()){
+			fields.resetToField(sections, ProtocolTokenizer.COMMA_SEPARATOR);
+			while(fields.next()){
+				if(fields.length() > 0){
+					consumers.add(fields.token());
+				}
+			}
+		}
+		Map<String, Integer> groups = new LinkedHashMap<String, Integer>();
+		if(sections.next()){
+			fields.resetToField(sections, ProtocolTokenizer.COMMA_SEPARATOR);
+			while(fields.next()){
+				parts.resetToField(fields, ProtocolTokenizer.COLON_SEPARATOR);
+				parts.next();
+				String groupName = parts.token();
+				int participantCount = 0;
+				if(parts.next()){
+					try{
+						participantCount = parts.tokenToInt();
+					} catch (NumberFormatException e){
+						System.out.println("Bad participant count for group "+groupName+" in "+question);
+					}
+				}
+				groups.put(groupName, participantCount);
+			}
+		}
+		this.type = type;
+		this.questionID = questionID;
+		this.text = text;
+		this.widgets = Collections.unmodifiableList(widgets);
+		this.consumers = Collections.unmodifiableList(consumers);
+		this.groups = Collections.unmodifiableMap(groups);
+	}
+
+	/**
+	 * Gets the raw Open message.
+	 *
+	 * @return the raw message
+	 */
+	public String getRaw(){
+		return raw;
+	}
+
+	/**
+	 * Gets the message type.
+	 *
+	 * @return "Open" or "OpenClickPad"
+	 */
+	public String getType(){
+		return type;
+	}
+
+	/**
+	 * Gets the question ID.
+	 *
+	 * @return the question ID
+	 */
+	public String getQuestionID(){
+		return questionID;
+	}
+
+	/**
+	 * Gets the question text.
+	 *
+	 * @return the text
+	 */
+	public String getText(){
+		return text;
+	}
+
+	/**
+	 * Gets the widgets, in index order.
+	 *
+	 * @return the widgets
+	 */
+	public List<Widget> getWidgets(){
+		return widgets;
+	}
+
+	/**
+	 * Gets how many widgets the question has.
+	 *
+	 * @return the widget count
+	 */
+	public int getWidgetCount(){
+		return widgets.size();
+	}
+
+	/**
+	 * Gets the consumers the question asks for.
+	 *
+	 * @return the consumer declarations
+	 */
+	public List<String> getConsumers(){
+		return consumers;
+	}
+
+	/**
+	 * Gets the groups answering the question.
+	 *
+	 * @return group identifier : participant count
+	 */
+	public Map<String, Integer> getGroups(){
+		return groups;
+	}
+
+	/**
+	 * Gets how many participants a group has.
+	 *
+	 * @param group the group identifier
+	 * @return the participant count, or 0 if the group is not part of the question
+	 */
+	public int getParticipantCount(String group){
+		Integer count = groups.get(group);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Gets every label a participant can pick: the labels of the B and TOG
+	 * widgets and the options of the COMBO widgets, in question order.
+	 *
+	 * @return the labels
+	 */
+	public List<String> getChoiceLabels(){
+		List<String> labels = new ArrayList<String>();
+		for(Widget widget : widgets){
+			if(widget.isChoice()){
+				labels.add(widget.getLabel());
+			} else if(widget.isCombo()){
+				labels.addAll(widget.getOptions());
+			}
+		}
+		return labels;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString(){
+		return raw;
+	}
+
+	/**
+	 * The Class Widget.
+	 *
+	 * One widget of a question.
+	 *
+	 */
+	public static class Widget {
+
+		/** The position of the widget in the question. */
+		private final int index;
+
+		/** The type: B, TOG, COMBO, ... */
+		private final String type;
+
+		/** The label. */
+		private final String label;
+
+		/** The options of a COMBO, or the value of anything else. */
+		private final List<String> options;
+
+		/**
+		 * Instantiates a new widget from its colon separated parts.
+		 *
+		 * @param index the position of the widget in the question
+		 * @param parts a tokenizer over the widget
+		 */
+		private Widget(int index, ProtocolTokenizer parts){
+			this.index = index;
+			this.type = parts.next() ? parts.token() : "";
+			this.label = parts.next() ? parts.token() : "";
+			List<String> options = new ArrayList<String>();
+			if(parts.next()){
+				ProtocolTokenizer optionList = new ProtocolTokenizer().resetToField(parts, ProtocolTokenizer.TILDE_SEPARATOR);
+				while(optionList.next()){
+					options.add(optionList.token());
+				}
+			}
+			this.options = Collections.unmodifiableList(options);
+		}
+
+		/**
+		 * Gets the position of the widget in the question.
+		 *
+		 * @return the index
+		 */
+		public int getIndex(){
+			return index;
+		}
+
+		/**
+		 * Gets the type.
+		 *
+		 * @return the type
+		 */
+		public String getType(){
+			return type;
+		}
+
+		/**
+		 * Gets the label.
+		 *
+		 * @return the label
+		 */
+		public String getLabel(){
+			return label;
+		}
+
+		/**
+		 * Gets the options of a COMBO, or the value of anything else.
+		 *
+		 * @return the options
+		 */
+		public List<String> getOptions(){
+			return options;
+		}
+
+		/**
+		 * Checks if this is a button or toggle, which answers with its label.
+		 *
+		 * @return true, if B or TOG
+		 */
+		public boolean isChoice(){
+			return type.equals("B") || type.equals("TOG");
+		}
+
+		/**
+		 * Checks if this is a combo box, which answers with one of its options.
+		 *
+		 * @return true, if COMBO
+		 */
+		public boolean isCombo(){
+			return type.equals("COMBO");
+		}
+	}
+}
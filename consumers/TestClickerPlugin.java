@@ -2,6 +2,9 @@ import java.util.Map;
 
 
 public class TestClickerPlugin implements ClickerConsumerInterface{
+
+	/** What this consumer declares; the hub reads it without constructing the consumer. */
+	public static final String CONSUMPTION_DECLARATION = "testConsumption";
 	
 	private boolean running;
 	private ConsumerFrame parent;
@@ -17,7 +20,7 @@ public class TestClickerPlugin implements ClickerConsumerInterface{
 
 	@Override
 	public String declareConsumptions() {
-		return "testConsumption";
+		return CONSUMPTION_DECLARATION;
 	}
 
 	@Override
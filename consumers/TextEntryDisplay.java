@@ -10,7 +10,10 @@ import javax.swing.JPanel;
 import javax.swing.JFrame;
 
 
-public class TextEntryDisplay extends JPanel implements ClickerConsumerInterface {
+public class TextEntryDisplay extends JPanel implements ClickerConsumerInterface, ReusableConsumer {
+
+	/** What this consumer declares; the hub reads it without constructing the consumer. */
+	public static final String CONSUMPTION_DECLARATION = "TextEntryDisplay`/:Count";
 
 	private JFrame frame;
 	private ConsumerFrame parent;
@@ -79,7 +82,7 @@ public class TextEntryDisplay extends JPanel implements ClickerConsumerInterface
 
 	@Override
 	public String declareConsumptions() {
-		return "TextEntryDisplay`/:Count";
+		return CONSUMPTION_DECLARATION;
 	}
 
 	@Override
@@ -90,6 +93,18 @@ public class TextEntryDisplay extends JPanel implements ClickerConsumerInterface
 		}
 	}
 
+	/**
+	 * Hides the frame without disposing it, so the hub can reuse this consumer for the next question.
+	 */
+	@Override
+	public void reset() {
+		frame.setVisible(false);
+		currentQuestion = null;
+		size = 0;
+		participantCount = 0;
+		currentValueMap.clear();
+	}
+
 	@Override
 	public boolean getActiveStatus() {
 		return false;
@@ -111,13 +126,9 @@ public class TextEntryDisplay extends JPanel implements ClickerConsumerInterface
 	@Override
 	public void setQuestion(String question) {
 		currentQuestion = question;
-		String[] questionParts = question.split("`/&");
-		String[] groupParts = questionParts[2].split("`/,");
-		for(String s : groupParts){
-			String[] st = s.split("`/:");
-			if(st[0].equals(groupID)){
-				participantCount = Integer.parseInt(st[1]);
-			}
+		QuestionDescriptor descriptor = QuestionDescriptor.forQuestion(question);
+		if(descriptor.getGroups().containsKey(groupID)){
+			participantCount = descriptor.getParticipantCount(groupID);
 		}
 		startGraph();
 	}
@@ -0,0 +1,185 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The Class AnswerRecord.
+ *
+ * Property of University of Northern Iowa
+ *
+ * One participant's current answers to a question, by widget index, along
+ * with what they had answered before.  Immutable.
+ *
+ */
+public class AnswerRecord implements ConsumerDelivery {
+
+	/** The group. */
+	private final String group;
+
+	/** The participant. */
+	private final String participant;
+
+	/** The answers, by widget index. */
+	private final String[] values;
+
+	/** The answers as index : value, built when first asked for. */
+	private volatile Map<String, String> answers;
+
+	/** The answers before this one, by widget index, or null if this is the first. */
+	private final String[] previousValues;
+
+	/**
+	 * Instantiates a new answer record.
+	 *
+	 * @param group the group
+	 * @param participant the participant
+	 * @param values the answers, by widget index; not copied, must not change afterwards
+	 */
+	public AnswerRecord(String group, String participant, String[] values){
+		this(group, participant, null, values);
+	}
+
+	/**
+	 * Instantiates a new answer record for an answer that may replace an earlier one.
+	 *
+	 * @param group the group
+	 * @param participant the participant
+	 * @param previousValues what the participant had answered before, by widget index, or null if nothing
+	 * @param values the answers, by widget index; neither array is copied, they must not change afterwards
+	 */
+	public AnswerRecord(String group, String participant, String[] previousValues, String[] values){
+		this.group = group;
+		this.participant = participant;
+		this.values = values;
+		this.previousValues = previousValues;
+	}
+
+	/**
+	 * Gets the group.
+	 *
+	 * @return the group
+	 */
+	public String getGroup(){
+		return group;
+	}
+
+	/**
+	 * Gets the participant.
+	 *
+	 * @return the participant
+	 */
+	public String getParticipant(){
+		return participant;
+	}
+
+	/**
+	 * Gets how many widgets were answered.
+	 *
+	 * @return the widget count
+	 */
+	public int getWidgetCount(){
+		return values.length;
+	}
+
+	/**
+	 * Gets the answer to a widget.
+	 *
+	 * @param index the widget index
+	 * @return the value, or null if there is none
+	 */
+	public String getValue(int index){
+		if(index < 0 || index >= values.length){
+			return null;
+		}
+		return values[index];
+	}
+
+	/**
+	 * Checks if this is the participant's first answer to the question.
+	 *
+	 * @return true, if they had not answered before
+	 */
+	public boolean isFirstAnswer(){
+		return previousValues == null;
+	}
+
+	/**
+	 * Gets what the participant had answered to a widget before.
+	 *
+	 * @param index the widget index
+	 * @return the value, or null if there is none
+	 */
+	public String getPreviousValue(int index){
+		if(previousValues == null || index < 0 || index >= previousValues.length){
+			return null;
+		}
+		return previousValues[index];
+	}
+
+	/**
+	 * Checks if the answer to a widget differs from what the participant had answered before.
+	 *
+	 * @param index the widget index
+	 * @return true, if it changed or is new
+	 */
+	public boolean isChanged(int index){
+		String previous = getPreviousValue(index);
+		String value = getValue(index);
+		return previous == null ? value != null : !previous.equals(value);
+	}
+
+	/**
+	 * Sends the answer to a listener, one event per widget.
+	 *
+	 * @param listener the listener
+	 */
+	public void dispatchTo(AnswerChangeListener listener){
+		for(int i = 0; i < values.length; i++){
+			listener.onAnswer(group, participant, i, getPreviousValue(i), values[i]);
+		}
+	}
+
+	/**
+	 * Gets the answers as index : value.
+	 *
+	 * @return the answers
+	 */
+	public Map<String, String> getAnswers(){
+		Map<String, String> built = answers;
+		if(built == null){
+			built = new HashMap<String, String>();
+			for(int i = 0; i < values.length; i++){
+				built.put(Integer.toString(i), values[i]);
+			}
+			built = Collections.unmodifiableMap(built);
+			answers = built;
+		}
+		return built;
+	}
+
+	/**
+	 * Gets the answers in the form inputData() takes.
+	 *
+	 * @return participant : index : value
+	 */
+	public Map<String, Map<String, String>> toMap(){
+		Map<String, Map<String, String>> map = new HashMap<String, Map<String, String>>();
+		map.put(participant, getAnswers());
+		return map;
+	}
+
+	/* (non-Javadoc)
+	 * @see ConsumerDelivery#deliverTo(TypedClickerConsumer)
+	 */
+	public void deliverTo(TypedClickerConsumer consumer){
+		consumer.answerReceived(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString(){
+		return toMap().toString();
+	}
+}
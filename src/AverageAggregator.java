@@ -0,0 +1,181 @@
+/**
+ * The Class AverageAggregator.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Keeps the running "Avg" results for one group.  For every widget index it
+ * holds the sum of the numeric answers and how many there are, in primitive
+ * arrays, and a resubmitted answer only takes its old values out and puts the
+ * new ones in.
+ *
+ * Sums are fixed point with FRACTION_DIGITS decimals, so decimal answers
+ * ("2.5", "-0.75") are accepted without any floating point drift as answers
+ * come and go.  Answers that are not numbers are ignored.
+ *
+ * Not thread safe: the sums belong to their group's lane, and consumers
+ * only ever see the immutable snapshots.
+ *
+ */
+public class AverageAggregator {
+
+	/** The key consumers read an average from. */
+	public static final String AVERAGE_KEY = AverageSnapshot.AVERAGE_KEY;
+
+	/** Decimal places kept for every answer. */
+	private static final int FRACTION_DIGITS = 6;
+
+	/** One unit in fixed point. */
+	private static final long SCALE = 1000000L;
+
+	/** Returned by parseFixedPoint() for anything that is not a number. */
+	public static final long NOT_A_NUMBER = Long.MIN_VALUE;
+
+	/** Largest whole part accepted, so sums of many answers cannot overflow. */
+	private static final long MAX_WHOLE = 1000000000L;
+
+	/** The sums, by widget index, in fixed point. */
+	private long[] sums;
+
+	/** How many numeric answers each widget index has. */
+	private int[] counts;
+
+	/**
+	 * Instantiates a new average aggregator.
+	 *
+	 * @param widgetCount how many widgets the question has
+	 */
+	public AverageAggregator(int widgetCount){
+		sums = new long[Math.max(widgetCount, 1)];
+		counts = new int[Math.max(widgetCount, 1)];
+	}
+
+	/**
+	 * Takes a participant's previous answers out of the sums and puts their new ones in.
+	 *
+	 * @param previousAnswers what the participant had answered, by widget index, or null if this is their first answer
+	 * @param newAnswers what the participant answered now, by widget index
+	 */
+	public void apply(String[] previousAnswers, String[] newAnswers){
+		if(previousAnswers != null){
+			add(previousAnswers, -1);
+		}
+		add(newAnswers, 1);
+	}
+
+	/**
+	 * Adds or removes every numeric answer of a participant.
+	 *
+	 * @param answers the answers, by widget index
+	 * @param sign 1 to add, -1 to remove
+	 */
+	private void add(String[] answers, int sign){
+		ensureCapacity(answers.length);
+		for(int index = 0; index < answers.length; index++){
+			if(answers[index] == null){
+				continue;
+			}
+			long value = parseFixedPoint(answers[index]);
+			if(value == NOT_A_NUMBER){
+				continue;
+			}
+			sums[index] += sign * value;
+			counts[index] += sign;
+		}
+	}
+
+	/**
+	 * Grows the arrays to hold at least the given number of widget indexes.
+	 *
+	 * @param size the number of indexes
+	 */
+	private void ensureCapacity(int size){
+		if(size <= sums.length){
+			return;
+		}
+		int newSize = Math.max(size, sums.length * 2);
+		long[] newSums = new long[newSize];
+		int[] newCounts = new int[newSize];
+		System.arraycopy(sums, 0, newSums, 0, sums.length);
+		System.arraycopy(counts, 0, newCounts, 0, counts.length);
+		sums = newSums;
+		counts = newCounts;
+	}
+
+	/**
+	 * Gets the average of a widget index.
+	 *
+	 * @param index the widget index
+	 * @return the average, or NaN if nobody has answered it with a number
+	 */
+	public double getAverage(int index){
+		if(index < 0 || index >= counts.length || counts[index] <= 0){
+			return Double.NaN;
+		}
+		return (double)sums[index] / SCALE / counts[index];
+	}
+
+	/**
+	 * Gets the current averages.
+	 *
+	 * @return the averages, by widget index
+	 */
+	public AverageSnapshot getSnapshot(){
+		double[] averages = new double[counts.length];
+		int[] answerCounts = new int[counts.length];
+		for(int i = 0; i < counts.length; i++){
+			averages[i] = getAverage(i);
+			answerCounts[i] = Math.max(counts[i], 0);
+		}
+		return new AverageSnapshot(averages, answerCounts);
+	}
+
+	/**
+	 * Parses a decimal number into fixed point without building anything.
+	 * Accepts an optional sign, digits and an optional fraction; decimals
+	 * past FRACTION_DIGITS are dropped.
+	 *
+	 * @param text the text
+	 * @return the value times 10^FRACTION_DIGITS, or NOT_A_NUMBER
+	 */
+	public static long parseFixedPoint(CharSequence text){
+		int length = text.length();
+		int i = 0;
+		boolean negative = false;
+		if(i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')){
+			negative = text.charAt(i) == '-';
+			i++;
+		}
+		long whole = 0;
+		long fraction = 0;
+		int fractionDigits = 0;
+		boolean sawDigit = false;
+		boolean sawPoint = false;
+		for(; i < length; i++){
+			char c = text.charAt(i);
+			if(c == '.' && !sawPoint){
+				sawPoint = true;
+			} else if(c >= '0' && c <= '9'){
+				sawDigit = true;
+				if(!sawPoint){
+					whole = whole * 10 + (c - '0');
+					if(whole > MAX_WHOLE){
+						return NOT_A_NUMBER;
+					}
+				} else if(fractionDigits < FRACTION_DIGITS){
+					fraction = fraction * 10 + (c - '0');
+					fractionDigits++;
+				}
+			} else {
+				return NOT_A_NUMBER;
+			}
+		}
+		if(!sawDigit){
+			return NOT_A_NUMBER;
+		}
+		for(; fractionDigits < FRACTION_DIGITS; fractionDigits++){
+			fraction *= 10;
+		}
+		long value = whole * SCALE + fraction;
+		return negative ? -value : value;
+	}
+}
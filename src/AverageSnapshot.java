@@ -0,0 +1,110 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The Class AverageSnapshot.
+ *
+ * Property of University of Northern Iowa
+ *
+ * The "Avg" results of a group at one moment: for every widget index, the
+ * average of the numeric answers and how many there are.  Immutable.
+ *
+ */
+public class AverageSnapshot implements ConsumerDelivery {
+
+	/** The key an average is under in the map form. */
+	public static final String AVERAGE_KEY = "Average";
+
+	/** The averages, by widget index; NaN where nobody answered with a number. */
+	private final double[] averages;
+
+	/** How many numeric answers each widget index has. */
+	private final int[] answerCounts;
+
+	/** The map form, built the first time a legacy consumer needs it. */
+	private volatile Map<String, Map<String, String>> map;
+
+	/**
+	 * Instantiates a new average snapshot.  The arrays are kept, not copied.
+	 *
+	 * @param averages the averages, by widget index
+	 * @param answerCounts how many numeric answers each widget index has
+	 */
+	public AverageSnapshot(double[] averages, int[] answerCounts){
+		this.averages = averages;
+		this.answerCounts = answerCounts;
+	}
+
+	/**
+	 * Gets how many widget indexes there are.
+	 *
+	 * @return the widget count
+	 */
+	public int getWidgetCount(){
+		return averages.length;
+	}
+
+	/**
+	 * Gets the average of a widget index.
+	 *
+	 * @param index the widget index
+	 * @return the average, or NaN if nobody has answered it with a number
+	 */
+	public double getAverage(int index){
+		if(index < 0 || index >= averages.length){
+			return Double.NaN;
+		}
+		return averages[index];
+	}
+
+	/**
+	 * Gets how many numeric answers a widget index has.
+	 *
+	 * @param index the widget index
+	 * @return the answer count
+	 */
+	public int getAnswerCount(int index){
+		if(index < 0 || index >= answerCounts.length){
+			return 0;
+		}
+		return answerCounts[index];
+	}
+
+	/**
+	 * Gets the averages in the form inputData() takes.
+	 *
+	 * @return widget index : "Average" : value, read-only at both levels
+	 */
+	public Map<String, Map<String, String>> toMap(){
+		Map<String, Map<String, String>> built = map;
+		if(built == null){
+			built = new HashMap<String, Map<String, String>>();
+			for(int i = 0; i < averages.length; i++){
+				if(answerCounts[i] > 0){
+					Map<String, String> average = new HashMap<String, String>();
+					average.put(AVERAGE_KEY, Float.toString((float)averages[i]));
+					built.put(Integer.toString(i), Collections.unmodifiableMap(average));
+				}
+			}
+			built = Collections.unmodifiableMap(built);
+			map = built;
+		}
+		return built;
+	}
+
+	/* (non-Javadoc)
+	 * @see ConsumerDelivery#deliverTo(TypedClickerConsumer)
+	 */
+	public void deliverTo(TypedClickerConsumer consumer){
+		consumer.averagesChanged(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString(){
+		return toMap().toString();
+	}
+}
@@ -0,0 +1,537 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+
+/**
+ * The Class ChannelTransport.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Non-blocking transport for line based connections to the server.
+ *
+ * Every connection is served by the same event loop thread, which does
+ * all the reading and writing.  Incoming bytes land in a reusable direct
+ * buffer per connection and are framed on '\n'.  Each frame is handed to
+ * the connection's FrameListener as a CharSequence view over that buffer:
+ * ASCII lines are never decoded as a whole, only the characters and
+ * fields a listener actually reads are touched.
+ *
+ * This is a Singleton class.  Only one instance of me can exist at
+ * a time.
+ *
+ */
+public class ChannelTransport implements Runnable {
+
+	/** Encoding used on the wire. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Starting size of a connection's read buffer. */
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+	/** Longest line accepted before the connection is dropped. */
+	private static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+	/** My Instance of myself */
+	private static ChannelTransport _instance;
+
+	/** Watches every connection. */
+	private Selector selector;
+
+	/** Work handed to the event loop by other threads. */
+	private ConcurrentLinkedQueue<Runnable> pendingTasks;
+
+	/** The event loop thread. */
+	private Thread loopThread;
+
+	/**
+	 * Instantiates a new instance of myself
+	 */
+	private ChannelTransport() {
+		pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+	}
+
+	/**
+	 * Gets the single instance of ChannelTransport.
+	 *
+	 * @return single instance of ChannelTransport
+	 */
+	public static synchronized ChannelTransport getInstance() {
+		if (_instance == null) {
+			_instance = new ChannelTransport();
+		}
+		return _instance;
+	}
+
+	/**
+	 * Starts the event loop if it is not already running.
+	 *
+	 * @throws IOException Signals that the selector could not be opened.
+	 */
+	private synchronized void start() throws IOException {
+		if (loopThread == null) {
+			selector = Selector.open();
+			loopThread = HubThreads.newTransportThread(this);
+			loopThread.start();
+		}
+	}
+
+	/**
+	 * Connects to the server, blocking the calling thread for at most
+	 * timeout milliseconds, and hands the connection to the event loop.
+	 * Nothing is read until listen() or readLine() is called.
+	 *
+	 * @param address the address of the server
+	 * @param timeout the connect timeout in milliseconds
+	 * @return the connection
+	 * @throws IOException Signals that the connection could not be made.
+	 */
+	public Connection connect(SocketAddress address, int timeout) throws IOException {
+		start();
+		SocketChannel channel = SocketChannel.open();
+		try {
+			channel.socket().connect(address, timeout);
+			channel.socket().setKeepAlive(true);
+			channel.configureBlocking(false);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		final Connection connection = new Connection(channel);
+		execute(new Runnable() {
+			public void run() {
+				connection.register();
+			}
+		});
+		return connection;
+	}
+
+	/**
+	 * Runs a task on the event loop thread, between frames.  Listeners use it
+	 * to get work done elsewhere back onto the thread their frames arrive on.
+	 * Starts the event loop if nothing has connected yet.
+	 *
+	 * @param task the task
+	 */
+	public void execute(Runnable task) {
+		try {
+			start();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not start the event loop", e);
+		}
+		pendingTasks.add(task);
+		selector.wakeup();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		while (true) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				e.printStackTrace();
+				continue;
+			}
+			Runnable task;
+			while ((task = pendingTasks.poll()) != null) {
+				//this is the only thread reading from the server, so nothing may stop it
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				Connection connection = (Connection) key.attachment();
+				try {
+					if (key.isValid() && key.isReadable()) {
+						connection.read();
+					}
+					if (key.isValid() && key.isWritable()) {
+						connection.flush();
+					}
+				} catch (IOException e) {
+					connection.lost();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The Interface FrameListener.
+	 *
+	 * Receives the frames of a connection on the event loop thread.
+	 *
+	 */
+	public interface FrameListener {
+
+		/**
+		 * Called for every line received, without its line terminator.
+		 * The frame is only valid for the duration of the call; use
+		 * toString() or subSequence() to keep any part of it.
+		 *
+		 * @param frame the frame
+		 */
+		public void frameReceived(CharSequence frame);
+
+		/**
+		 * Called once when the server closes the connection or it fails.
+		 */
+		public void connectionLost();
+	}
+
+	/**
+	 * The Class Connection.
+	 *
+	 * One connection to the server.  send() and close() may be called from
+	 * any thread; everything else happens on the event loop.
+	 *
+	 */
+	public class Connection {
+
+		/** The channel. */
+		private SocketChannel channel;
+
+		/** The selection key, once registered. */
+		private SelectionKey key;
+
+		/** Incoming bytes not yet framed. */
+		private ByteBuffer readBuffer;
+
+		/** How far into readBuffer has already been searched for a line end. */
+		private int scanned;
+
+		/** Whether a byte outside ASCII was seen in the current line. */
+		private boolean highByteSeen;
+
+		/** Messages waiting to be written. */
+		private ConcurrentLinkedQueue<ByteBuffer> writeQueue;
+
+		/** Receives the frames, or null when lines are read with readLine(). */
+		private FrameListener listener;
+
+		/** Lines waiting for readLine() when there is no listener. */
+		private LinkedBlockingQueue<String> lines;
+
+		/** The reusable view handed to the listener. */
+		private Frame frame;
+
+		/** Whether the connection has been closed. */
+		private volatile boolean closed;
+
+		/**
+		 * Instantiates a new connection.
+		 *
+		 * @param channel the connected channel
+		 */
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+			readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+			writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+			lines = new LinkedBlockingQueue<String>();
+			frame = new Frame();
+		}
+
+		/**
+		 * Registers with the selector.  Runs on the event loop.
+		 */
+		private void register() {
+			try {
+				key = channel.register(selector, writeQueue.isEmpty() ? 0 : SelectionKey.OP_WRITE, this);
+			} catch (ClosedChannelException e) {
+				closed = true;
+			}
+		}
+
+		/**
+		 * Starts delivering every frame to the listener.
+		 *
+		 * @param frameListener the listener
+		 */
+		public void listen(final FrameListener frameListener) {
+			execute(new Runnable() {
+				public void run() {
+					listener = frameListener;
+					interest(SelectionKey.OP_READ, true);
+				}
+			});
+		}
+
+		/**
+		 * Blocks until the next line arrives, for connections without a listener.
+		 *
+		 * @return the line, or null if the connection was lost
+		 * @throws IOException Signals that the wait was interrupted.
+		 */
+		public String readLine() throws IOException {
+			if (closed && lines.isEmpty()) {
+				return null;
+			}
+			execute(new Runnable() {
+				public void run() {
+					interest(SelectionKey.OP_READ, true);
+				}
+			});
+			try {
+				String line = lines.take();
+				return line == EOF ? null : line;
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted while waiting for a line");
+			}
+		}
+
+		/**
+		 * Queues a line to be written by the event loop.
+		 *
+		 * @param message the message, without a line terminator
+		 */
+		public void send(String message) {
+			writeQueue.add(ByteBuffer.wrap((message + "\n").getBytes(UTF_8)));
+			execute(new Runnable() {
+				public void run() {
+					interest(SelectionKey.OP_WRITE, true);
+				}
+			});
+		}
+
+		/**
+		 * Closes the connection.  The listener is not told.
+		 */
+		public void close() {
+			closed = true;
+			try {
+				channel.close();
+			} catch (IOException e) {}
+		}
+
+		/**
+		 * Adds or removes an operation from the selection key.
+		 *
+		 * @param operation the operation
+		 * @param on whether to add it
+		 */
+		private void interest(int operation, boolean on) {
+			if (key == null || !key.isValid()) {
+				return;
+			}
+			key.interestOps(on ? key.interestOps() | operation : key.interestOps() & ~operation);
+		}
+
+		/**
+		 * Writes as much of the queue as the socket will take.  Runs on the event loop.
+		 *
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		private void flush() throws IOException {
+			ByteBuffer next;
+			while ((next = writeQueue.peek()) != null) {
+				channel.write(next);
+				if (next.hasRemaining()) {
+					return;
+				}
+				writeQueue.poll();
+			}
+			interest(SelectionKey.OP_WRITE, false);
+		}
+
+		/**
+		 * Reads what is available and hands on every complete line.  Runs on the event loop.
+		 *
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		private void read() throws IOException {
+			if (channel.read(readBuffer) < 0) {
+				lost();
+				return;
+			}
+			int limit = readBuffer.position();
+			int lineStart = 0;
+			for (int i = scanned; i < limit; i++) {
+				byte b = readBuffer.get(i);
+				if (b == '\n') {
+					int lineEnd = i;
+					if (lineEnd > lineStart && readBuffer.get(lineEnd - 1) == '\r') {
+						lineEnd--;
+					}
+					deliver(lineStart, lineEnd);
+					lineStart = i + 1;
+					highByteSeen = false;
+				} else if (b < 0) {
+					highByteSeen = true;
+				}
+			}
+			readBuffer.flip();
+			readBuffer.position(lineStart);
+			readBuffer.compact();
+			scanned = readBuffer.position();
+			if (!readBuffer.hasRemaining()) {
+				if (readBuffer.capacity() >= MAX_FRAME_SIZE) {
+					System.out.println("Line longer than " + MAX_FRAME_SIZE + " bytes, dropping connection");
+					lost();
+					return;
+				}
+				ByteBuffer bigger = ByteBuffer.allocateDirect(readBuffer.capacity() * 2);
+				readBuffer.flip();
+				bigger.put(readBuffer);
+				readBuffer = bigger;
+			}
+		}
+
+		/**
+		 * Hands one line to the listener or the readLine() queue.
+		 *
+		 * @param start start of the line in readBuffer
+		 * @param end end of the line in readBuffer, exclusive
+		 */
+		private void deliver(int start, int end) {
+			frame.wrap(readBuffer, start, end, highByteSeen);
+			if (listener == null) {
+				lines.add(frame.toString());
+				return;
+			}
+			try {
+				listener.frameReceived(frame);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * Closes the connection after the server went away and tells the listener.
+		 */
+		private void lost() {
+			boolean wasClosed = closed;
+			close();
+			if (wasClosed) {
+				return;
+			}
+			if (listener != null) {
+				try {
+					listener.connectionLost();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			} else {
+				lines.add(EOF);
+			}
+		}
+	}
+
+	/** Marks the end of the readLine() queue. */
+	private static final String EOF = new String("EOF");
+
+	/**
+	 * The Class Frame.
+	 *
+	 * A line of the read buffer seen as characters.  ASCII lines are read
+	 * straight out of the buffer; anything else is decoded once, on first use.
+	 *
+	 */
+	private static class Frame implements CharSequence {
+
+		/** The buffer holding the line. */
+		private ByteBuffer buffer;
+
+		/** Start of the line in the buffer. */
+		private int offset;
+
+		/** Length of the line in bytes. */
+		private int byteLength;
+
+		/** Whether the line has bytes outside ASCII. */
+		private boolean needsDecoding;
+
+		/** The decoded line, once needed. */
+		private String decoded;
+
+		/**
+		 * Points the frame at a new line.
+		 *
+		 * @param buffer the buffer
+		 * @param start start of the line
+		 * @param end end of the line, exclusive
+		 * @param highBytes whether the line has bytes outside ASCII
+		 */
+		private void wrap(ByteBuffer buffer, int start, int end, boolean highBytes) {
+			this.buffer = buffer;
+			this.offset = start;
+			this.byteLength = end - start;
+			this.needsDecoding = highBytes;
+			this.decoded = null;
+		}
+
+		/**
+		 * Decodes the whole line.
+		 *
+		 * @return the line
+		 */
+		private String decoded() {
+			if (decoded == null) {
+				ByteBuffer line = buffer.duplicate();
+				line.limit(offset + byteLength);
+				line.position(offset);
+				decoded = UTF_8.decode(line).toString();
+			}
+			return decoded;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.CharSequence#length()
+		 */
+		public int length() {
+			return needsDecoding ? decoded().length() : byteLength;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.CharSequence#charAt(int)
+		 */
+		public char charAt(int index) {
+			if (needsDecoding) {
+				return decoded().charAt(index);
+			}
+			if (index < 0 || index >= byteLength) {
+				throw new IndexOutOfBoundsException("index " + index);
+			}
+			return (char) buffer.get(offset + index);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.CharSequence#subSequence(int, int)
+		 */
+		public CharSequence subSequence(int start, int end) {
+			if (needsDecoding) {
+				return decoded().substring(start, end);
+			}
+			if (start < 0 || end > byteLength || start > end) {
+				throw new IndexOutOfBoundsException("range " + start + " to " + end);
+			}
+			char[] chars = new char[end - start];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) buffer.get(offset + start + i);
+			}
+			return new String(chars);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			return subSequence(0, length()).toString();
+		}
+	}
+}
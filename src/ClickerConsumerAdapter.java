@@ -4,14 +4,70 @@ import java.util.Map;
 // TODO: Auto-generated Javadoc
 /**
  * The Class ClickerConsumerAdapter.
+ *
+ * Bridges the typed consumer interface to the map based one.  Each typed
+ * callback turns its view into the map inputData() expects and calls the
+ * legacy consumer's inputData(), or this adapter's own when it is extended.
+ * A subclass can override the typed callbacks one at a time.  A consumer
+ * that is an AnswerChangeListener gets its answers through onAnswer() instead.
  */
-public class ClickerConsumerAdapter implements ClickerConsumerInterface {
+public class ClickerConsumerAdapter implements TypedClickerConsumer {
+
+	/** The map based consumer being bridged, or null if this adapter is extended instead. */
+	private final ClickerConsumerInterface legacy;
 
 	/**
 	 * Instantiates a new clicker consumer adapter.
 	 */
 	public ClickerConsumerAdapter(){
-		
+		this.legacy = null;
+	}
+
+	/**
+	 * Instantiates a new clicker consumer adapter that bridges a map based consumer.
+	 *
+	 * @param legacy the consumer
+	 */
+	public ClickerConsumerAdapter(ClickerConsumerInterface legacy){
+		this.legacy = legacy;
+	}
+
+	/**
+	 * Gets the consumer that receives the maps.
+	 *
+	 * @return the bridged consumer, or this adapter
+	 */
+	private ClickerConsumerInterface target(){
+		return legacy == null ? this : legacy;
+	}
+
+	/* (non-Javadoc)
+	 * @see TypedClickerConsumer#countsChanged(CountSnapshot)
+	 */
+	@Override
+	public void countsChanged(CountSnapshot counts) {
+		target().inputData(counts.toMap());
+	}
+
+	/* (non-Javadoc)
+	 * @see TypedClickerConsumer#averagesChanged(AverageSnapshot)
+	 */
+	@Override
+	public void averagesChanged(AverageSnapshot averages) {
+		target().inputData(averages.toMap());
+	}
+
+	/* (non-Javadoc)
+	 * @see TypedClickerConsumer#answerReceived(AnswerRecord)
+	 */
+	@Override
+	public void answerReceived(AnswerRecord answer) {
+		ClickerConsumerInterface target = target();
+		if(target instanceof AnswerChangeListener){
+			answer.dispatchTo((AnswerChangeListener) target);
+		} else {
+			target.inputData(answer.toMap());
+		}
 	}
 	
 
@@ -20,8 +76,9 @@ public class ClickerConsumerAdapter implements ClickerConsumerInterface {
 	 */
 	@Override
 	public void setID(String id) {
-		// TODO Auto-generated method stub
-		
+		if(legacy != null){
+			legacy.setID(id);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -29,8 +86,7 @@ public class ClickerConsumerAdapter implements ClickerConsumerInterface {
 	 */
 	@Override
 	public String declareConsumptions() {
-		// TODO Auto-generated method stub
-		return null;
+		return legacy == null ? null : legacy.declareConsumptions();
 	}
 
 	/* (non-Javadoc)
@@ -38,8 +94,9 @@ public class ClickerConsumerAdapter implements ClickerConsumerInterface {
 	 */
 	@Override
 	public void setActiveStatus(boolean status) {
-		// TODO Auto-generated method stub
-		
+		if(legacy != null){
+			legacy.setActiveStatus(status);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -47,8 +104,7 @@ public class ClickerConsumerAdapter implements ClickerConsumerInterface {
 	 */
 	@Override
 	public boolean getActiveStatus() {
-		// TODO Auto-generated method stub
-		return false;
+		return legacy != null && legacy.getActiveStatus();
 	}
 
 	/* (non-Javadoc)
@@ -56,8 +112,9 @@ public class ClickerConsumerAdapter implements ClickerConsumerInterface {
 	 */
 	@Override
 	public void inputData(Map<String, Map<String, String>> input) {
-		// TODO Auto-generated method stub
-		
+		if(legacy != null){
+			legacy.inputData(input);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -65,8 +122,9 @@ public class ClickerConsumerAdapter implements ClickerConsumerInterface {
 	 */
 	@Override
 	public void setQuestion(String question) {
-		// TODO Auto-generated method stub
-		
+		if(legacy != null){
+			legacy.setQuestion(question);
+		}
 	}
 
 }
@@ -0,0 +1,118 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+
+
+/**
+ * The Class ConsumerFactory.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Builds instances of one consumer class through its public no-argument
+ * constructor.  The constructor is looked up once, when the plugin is
+ * registered, and kept as a MethodHandle, so building a consumer on Open
+ * is a direct call without Class.newInstance()'s access checks.  A class
+ * that cannot be built is reported by forClass() and never registered.
+ *
+ */
+public class ConsumerFactory {
+
+	/** The type every constructor handle is adapted to. */
+	private static final MethodType FACTORY_TYPE = MethodType.methodType(ClickerConsumerInterface.class);
+
+	/** The consumer class. */
+	private final Class<? extends ClickerConsumerInterface> consumerClass;
+
+	/** The no-argument constructor, returning ClickerConsumerInterface. */
+	private final MethodHandle constructor;
+
+	/**
+	 * Instantiates a new consumer factory.
+	 *
+	 * @param consumerClass the consumer class
+	 * @param constructor the constructor handle
+	 */
+	private ConsumerFactory(Class<? extends ClickerConsumerInterface> consumerClass, MethodHandle constructor){
+		this.consumerClass = consumerClass;
+		this.constructor = constructor;
+	}
+
+	/**
+	 * Makes a factory for a consumer class, reporting why if it cannot.
+	 *
+	 * @param consumerClass the consumer class
+	 * @return the factory, or null if the class has no usable public no-argument constructor
+	 */
+	public static ConsumerFactory forClass(Class<? extends ClickerConsumerInterface> consumerClass){
+		if(consumerClass.isInterface() || Modifier.isAbstract(consumerClass.getModifiers())){
+			System.out.println(consumerClass.getName()+" is abstract and cannot be constructed.");
+			return null;
+		}
+		try{
+			MethodHandle constructor = MethodHandles.publicLookup().findConstructor(consumerClass, MethodType.methodType(void.class));
+			return new ConsumerFactory(consumerClass, constructor.asType(FACTORY_TYPE));
+		} catch (NoSuchMethodException e){
+			System.out.println(consumerClass.getName()+" has no public no-argument constructor.");
+		} catch (IllegalAccessException e){
+			System.out.println(consumerClass.getName()+" is not public, so it cannot be constructed.");
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the consumer class.
+	 *
+	 * @return the class
+	 */
+	public Class<? extends ClickerConsumerInterface> getConsumerClass(){
+		return consumerClass;
+	}
+
+	/**
+	 * Builds a consumer.  Whatever the constructor throws is passed on,
+	 * checked exceptions wrapped in a ConsumerConstructionException.
+	 *
+	 * @return the new consumer
+	 */
+	public ClickerConsumerInterface newConsumer(){
+		try{
+			return (ClickerConsumerInterface) constructor.invokeExact();
+		} catch (RuntimeException e){
+			throw e;
+		} catch (Error e){
+			throw e;
+		} catch (Throwable e){
+			throw new ConsumerConstructionException(consumerClass.getName()+" could not be constructed: "+e, e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString(){
+		return "ConsumerFactory["+consumerClass.getName()+"]";
+	}
+
+	/**
+	 * The Class ConsumerConstructionException.
+	 *
+	 * A consumer's constructor threw a checked exception.
+	 *
+	 */
+	public static class ConsumerConstructionException extends RuntimeException {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Instantiates a new consumer construction exception.
+		 *
+		 * @param message the message
+		 * @param cause what the constructor threw
+		 */
+		public ConsumerConstructionException(String message, Throwable cause){
+			super(message, cause);
+		}
+	}
+}
@@ -0,0 +1,554 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * The Class ConsumerMailbox.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Hands answers to one active consumer, in the order they were posted.
+ *
+ * Posting never blocks the thread reading from the server: the mailbox is
+ * bounded, and once full the oldest waiting delivery is dropped.  Mailboxes
+ * share a pool of worker threads, but at most one worker serves a mailbox at
+ * a time, so a consumer never sees two deliveries at once or out of order.
+ *
+ * A conflating mailbox is for consumers that only show the latest snapshot
+ * (Count, Avg).  It holds a single pending delivery: a newer snapshot posted
+ * before the consumer got to the older one replaces it, so a burst of answers
+ * costs the consumer one inputData() call rather than one per answer.
+ *
+ * A consumer that takes longer than the deadline over an inputData() call
+ * is flagged.  After QUARANTINE_AFTER overruns in a row, or once a single call
+ * has been stuck for QUARANTINE_AFTER deadlines, the mailbox is quarantined:
+ * it stops taking deliveries until the question closes, so one broken plugin
+ * cannot keep piling up work for the hub.
+ *
+ * A consumer that joins after answers came in gets them through preload():
+ * they wait ahead of everything posted later and count against neither the
+ * capacity nor the overflow policy, so none of the catch-up is dropped.
+ *
+ * A BatchConsumer is not served as soon as a delivery arrives: the mailbox
+ * lingers for a few milliseconds so a burst of answers piles up, then hands
+ * over everything waiting in one inputBatch() call.  A batch that reaches the
+ * maximum size is handed over without waiting out the linger.
+ *
+ */
+public class ConsumerMailbox implements Runnable {
+
+	/** How many deliveries can wait before the oldest is dropped. */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	/** How long an inputData() call may take by default, in milliseconds. */
+	public static final long DEFAULT_DEADLINE_MILLIS = 1000;
+
+	/** How many deliveries a batch holds by default. */
+	public static final int DEFAULT_MAX_BATCH = 64;
+
+	/** How long a batch waits to fill by default, in milliseconds. */
+	public static final long DEFAULT_LINGER_MILLIS = 20;
+
+	/** How many deliveries a worker makes before giving other mailboxes a turn. */
+	private static final int DELIVERIES_PER_TURN = 16;
+
+	/** How many overruns in a row quarantine the consumer. */
+	private static final int QUARANTINE_AFTER = 3;
+
+	/**
+	 * The Enum OverflowPolicy.
+	 *
+	 * What a full mailbox does with a new delivery.
+	 */
+	public enum OverflowPolicy {
+
+		/** Drop the oldest waiting delivery to make room. */
+		DROP_OLDEST,
+
+		/** Drop the new delivery. */
+		DROP_NEWEST,
+
+		/** Drop the whole backlog and keep only the new delivery, so the consumer catches up. */
+		DEGRADE
+	}
+
+	/** The consumer. */
+	private final ClickerConsumerInterface consumer;
+
+	/** Receives the deliveries: the consumer, or an adapter bridging it to inputData(). */
+	private final TypedClickerConsumer receiver;
+
+	/** The consumer, if it takes its deliveries in batches. */
+	private final BatchConsumer batchConsumer;
+
+	/** The worker pool. */
+	private final Executor executor;
+
+	/** Ends the linger before a batch; null until setBatching() is called. */
+	private ScheduledExecutorService lingerTimer;
+
+	/** How many deliveries a batch holds. */
+	private int maxBatch;
+
+	/** How long a batch waits to fill, in nanoseconds. */
+	private long lingerNanos;
+
+	/** Whether a batch is waiting to fill. */
+	private final AtomicBoolean lingering;
+
+	/** Deliveries waiting for the consumer. */
+	private final ArrayBlockingQueue<ConsumerDelivery> queue;
+
+	/** Catch-up deliveries, served before the queue. */
+	private final ConcurrentLinkedQueue<ConsumerDelivery> backlog;
+
+	/** Whether only the latest delivery matters. */
+	private final boolean conflating;
+
+	/** What to do when the queue is full. */
+	private final OverflowPolicy policy;
+
+	/** How long an inputData() call may take, in nanoseconds. */
+	private final long deadlineNanos;
+
+	/** When the current inputData() call started, or 0 if none is running. */
+	private volatile long deliveryStarted;
+
+	/** Overruns since the last delivery that met the deadline. */
+	private int overrunsInARow;
+
+	/** Whether the consumer has been cut off for overrunning its deadline. */
+	private volatile boolean quarantined;
+
+	/** The snapshot waiting for a conflating consumer. */
+	private final AtomicReference<ConsumerDelivery> latestSnapshot;
+
+	/** Whether a worker has been asked to serve this mailbox. */
+	private final AtomicBoolean scheduled;
+
+	/** Whether close() has been called. */
+	private volatile boolean closing;
+
+	/** Whether the mailbox has been drained after close(). */
+	private boolean finished;
+
+	/** Runs once the mailbox is drained after close(). */
+	private Runnable whenDrained;
+
+	/** How many deliveries were dropped because the mailbox was full. */
+	private final AtomicLong dropped;
+
+	/** How many snapshots were replaced by a newer one before being delivered. */
+	private final AtomicLong conflated;
+
+	/** How many deliveries were made. */
+	private final AtomicLong delivered;
+
+	/** How many inputData() calls overran the deadline. */
+	private final AtomicLong overruns;
+
+	/** The longest inputData() call so far, in nanoseconds. */
+	private volatile long slowestDelivery;
+
+	/**
+	 * Instantiates a new consumer mailbox.
+	 *
+	 * @param consumer the consumer
+	 * @param executor the worker pool
+	 * @param capacity how many deliveries can wait
+	 * @param conflating whether only the latest delivery matters
+	 * @param policy what to do when the mailbox is full
+	 * @param deadlineMillis how long an inputData() call may take
+	 */
+	public ConsumerMailbox(ClickerConsumerInterface consumer, Executor executor, int capacity, boolean conflating, OverflowPolicy policy, long deadlineMillis){
+		this.consumer = consumer;
+		this.receiver = consumer instanceof TypedClickerConsumer ? (TypedClickerConsumer) consumer : new ClickerConsumerAdapter(consumer);
+		this.batchConsumer = consumer instanceof BatchConsumer ? (BatchConsumer) consumer : null;
+		this.executor = executor;
+		this.maxBatch = DEFAULT_MAX_BATCH;
+		this.lingering = new AtomicBoolean(false);
+		this.queue = new ArrayBlockingQueue<ConsumerDelivery>(capacity);
+		this.backlog = new ConcurrentLinkedQueue<ConsumerDelivery>();
+		this.conflating = conflating;
+		this.policy = policy;
+		this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+		this.latestSnapshot = new AtomicReference<ConsumerDelivery>();
+		this.scheduled = new AtomicBoolean(false);
+		this.dropped = new AtomicLong();
+		this.conflated = new AtomicLong();
+		this.delivered = new AtomicLong();
+		this.overruns = new AtomicLong();
+	}
+
+	/**
+	 * Sets how a BatchConsumer's batches are made up; has no effect on other
+	 * consumers.  Call before the first post().
+	 *
+	 * @param lingerTimer ends the linger before a batch
+	 * @param maxBatch how many deliveries a batch holds
+	 * @param lingerMillis how long a batch waits to fill, 0 to hand over whatever is waiting straight away
+	 */
+	public void setBatching(ScheduledExecutorService lingerTimer, int maxBatch, long lingerMillis){
+		this.lingerTimer = lingerTimer;
+		this.maxBatch = Math.max(1, maxBatch);
+		this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+	}
+
+	/**
+	 * Gets the consumer.
+	 *
+	 * @return the consumer
+	 */
+	public ClickerConsumerInterface getConsumer(){
+		return consumer;
+	}
+
+	/**
+	 * Queues a delivery for the consumer.
+	 *
+	 * @param input the delivery
+	 * @return true, if it was queued; false once the mailbox is closing or quarantined
+	 */
+	public boolean post(ConsumerDelivery input){
+		if(closing){
+			return false;
+		}
+		checkStuck();
+		if(quarantined){
+			dropped.incrementAndGet();
+			return false;
+		}
+		if(conflating){
+			if(latestSnapshot.getAndSet(input) != null){
+				conflated.incrementAndGet();
+			}
+			if(quarantined){
+				dropWaiting();
+				return false;
+			}
+			schedule();
+			return true;
+		}
+		while(!queue.offer(input)){
+			if(policy == OverflowPolicy.DROP_NEWEST){
+				dropped.incrementAndGet();
+				System.out.println("Mailbox full, dropped a delivery to "+consumer.getClass().getName());
+				return false;
+			} else if(policy == OverflowPolicy.DEGRADE){
+				int skipped = 0;
+				while(queue.poll() != null){
+					skipped++;
+				}
+				dropped.addAndGet(skipped);
+				System.out.println("Mailbox full, dropped "+skipped+" deliveries to "+consumer.getClass().getName());
+			} else if(queue.poll() != null){
+				dropped.incrementAndGet();
+				System.out.println("Mailbox full, dropped a delivery to "+consumer.getClass().getName());
+			}
+		}
+		//quarantine() may have emptied the mailbox between the check above and the offer
+		if(quarantined){
+			dropWaiting();
+			return false;
+		}
+		schedule();
+		if(lingering.get() && queue.size() >= maxBatch){
+			endLinger();
+		}
+		return true;
+	}
+
+	/**
+	 * Queues what a consumer joining late has missed, ahead of everything
+	 * posted afterwards, whatever the capacity and overflow policy.  Call
+	 * before the first post().
+	 *
+	 * @param deliveries the deliveries, oldest first
+	 * @return true, if they were queued; false once the mailbox is closing or quarantined
+	 */
+	public boolean preload(List<ConsumerDelivery> deliveries){
+		if(closing || quarantined){
+			return false;
+		}
+		backlog.addAll(deliveries);
+		schedule();
+		return true;
+	}
+
+	/**
+	 * Quarantines the consumer if its current inputData() call has been
+	 * running for QUARANTINE_AFTER deadlines.
+	 */
+	private void checkStuck(){
+		long started = deliveryStarted;
+		if(started != 0 && !quarantined && System.nanoTime() - started > deadlineNanos * QUARANTINE_AFTER){
+			quarantine("stuck in inputData() for over "+TimeUnit.NANOSECONDS.toMillis(deadlineNanos * QUARANTINE_AFTER)+"ms");
+		}
+	}
+
+	/**
+	 * Stops taking deliveries for the consumer and throws away what is waiting.
+	 *
+	 * @param reason why, for the log
+	 */
+	private void quarantine(String reason){
+		quarantined = true;
+		dropWaiting();
+		System.out.println("Quarantined "+consumer.getClass().getName()+": "+reason);
+	}
+
+	/**
+	 * Throws away everything waiting, counting it as dropped.
+	 */
+	private void dropWaiting(){
+		int skipped = 0;
+		while(take() != null){
+			skipped++;
+		}
+		dropped.addAndGet(skipped);
+	}
+
+	/**
+	 * Stops taking deliveries.  What is already queued is still delivered,
+	 * then whenDrained runs on the mailbox's worker.
+	 *
+	 * @param whenDrained what to do once the mailbox is empty, may be null
+	 */
+	public void close(Runnable whenDrained){
+		this.whenDrained = whenDrained;
+		closing = true;
+		schedule();
+		endLinger();
+	}
+
+	/**
+	 * Gets how many deliveries were dropped because the mailbox was full.
+	 *
+	 * @return the dropped count
+	 */
+	public long getDropped(){
+		return dropped.get();
+	}
+
+	/**
+	 * Gets how many snapshots were replaced by a newer one before being delivered.
+	 *
+	 * @return the conflated count
+	 */
+	public long getConflated(){
+		return conflated.get();
+	}
+
+	/**
+	 * Gets how many deliveries were made.
+	 *
+	 * @return the delivered count
+	 */
+	public long getDelivered(){
+		return delivered.get();
+	}
+
+	/**
+	 * Gets how many inputData() calls overran the deadline.
+	 *
+	 * @return the overrun count
+	 */
+	public long getOverruns(){
+		return overruns.get();
+	}
+
+	/**
+	 * Gets the longest inputData() call so far.
+	 *
+	 * @return the time in milliseconds
+	 */
+	public long getSlowestDeliveryMillis(){
+		return TimeUnit.NANOSECONDS.toMillis(slowestDelivery);
+	}
+
+	/**
+	 * Describes the mailbox's counters, for the log.
+	 *
+	 * @return the statistics
+	 */
+	public String getStatistics(){
+		return consumer.getClass().getName()+" delivered="+getDelivered()+" dropped="+getDropped()+" conflated="+getConflated()
+			+" overruns="+getOverruns()+" slowest="+getSlowestDeliveryMillis()+"ms"+(quarantined ? " QUARANTINED" : "");
+	}
+
+	/**
+	 * Takes the next delivery.
+	 *
+	 * @return the delivery, or null if nothing is waiting
+	 */
+	private ConsumerDelivery take(){
+		ConsumerDelivery caughtUp = backlog.poll();
+		if(caughtUp != null){
+			return caughtUp;
+		}
+		if(conflating){
+			return latestSnapshot.getAndSet(null);
+		}
+		return queue.poll();
+	}
+
+	/**
+	 * Checks if nothing is waiting.
+	 *
+	 * @return true, if empty
+	 */
+	private boolean isEmpty(){
+		return backlog.isEmpty() && queue.isEmpty() && latestSnapshot.get() == null;
+	}
+
+	/**
+	 * Takes the deliveries for the next batch.
+	 *
+	 * @return the batch, or null if nothing is waiting
+	 */
+	private DeliveryBatch takeBatch(){
+		List<ConsumerDelivery> deliveries = new ArrayList<ConsumerDelivery>();
+		ConsumerDelivery input;
+		while(deliveries.size() < maxBatch && (input = take()) != null){
+			deliveries.add(input);
+		}
+		return deliveries.isEmpty() ? null : new DeliveryBatch(deliveries);
+	}
+
+	/**
+	 * Makes the next delivery, or the next batch for a BatchConsumer.
+	 *
+	 * @return how many deliveries were made, 0 if nothing was waiting
+	 */
+	private int deliverNext(){
+		ConsumerDelivery input = null;
+		DeliveryBatch batch = null;
+		if(batchConsumer != null){
+			batch = takeBatch();
+		} else {
+			input = take();
+		}
+		if(input == null && batch == null){
+			return 0;
+		}
+		long started = System.nanoTime();
+		deliveryStarted = started;
+		try{
+			if(batch != null){
+				batchConsumer.inputBatch(batch);
+			} else {
+				input.deliverTo(receiver);
+			}
+		} catch (RuntimeException e){
+			e.printStackTrace();
+		}
+		deliveryStarted = 0;
+		int count = batch != null ? batch.size() : 1;
+		timeDelivery(System.nanoTime() - started, count);
+		return count;
+	}
+
+	/**
+	 * Records how long an inputData() call took, flagging it if it overran the deadline.
+	 *
+	 * @param elapsed the time in nanoseconds
+	 * @param count how many deliveries the call made
+	 */
+	private void timeDelivery(long elapsed, int count){
+		delivered.addAndGet(count);
+		if(elapsed > slowestDelivery){
+			slowestDelivery = elapsed;
+		}
+		if(elapsed <= deadlineNanos){
+			overrunsInARow = 0;
+			return;
+		}
+		overruns.incrementAndGet();
+		overrunsInARow++;
+		System.out.println(consumer.getClass().getName()+" took "+TimeUnit.NANOSECONDS.toMillis(elapsed)+"ms over inputData()");
+		if(overrunsInARow >= QUARANTINE_AFTER && !quarantined){
+			quarantine(overrunsInARow+" deliveries in a row over "+TimeUnit.NANOSECONDS.toMillis(deadlineNanos)+"ms");
+		}
+	}
+
+	/**
+	 * Asks a worker to serve this mailbox, unless one already is.
+	 */
+	private void schedule(){
+		if(scheduled.compareAndSet(false, true)){
+			if(batchConsumer != null && lingerTimer != null && lingerNanos > 0 && !closing && backlog.isEmpty() && queue.size() < maxBatch){
+				linger();
+			} else {
+				executor.execute(this);
+			}
+		}
+	}
+
+	/**
+	 * Lets a batch fill for the linger time before a worker serves it.
+	 * Call once scheduled has been set.
+	 */
+	private void linger(){
+		lingering.set(true);
+		try{
+			lingerTimer.schedule(new Runnable(){
+				public void run(){
+					endLinger();
+				}
+			}, lingerNanos, TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException e){
+			endLinger();
+		}
+	}
+
+	/**
+	 * Hands a lingering batch to a worker now, unless that has already happened.
+	 */
+	private void endLinger(){
+		if(lingering.compareAndSet(true, false)){
+			executor.execute(this);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		int deliveries = 0;
+		while(deliveries < DELIVERIES_PER_TURN && !quarantined){
+			int made = deliverNext();
+			if(made == 0){
+				break;
+			}
+			deliveries += made;
+		}
+		if(quarantined){
+			//a post() racing quarantine() can leave a delivery behind; nothing is delivered any more
+			dropWaiting();
+		}
+		if(closing && !finished && (quarantined || isEmpty())){
+			finished = true;
+			if(whenDrained != null){
+				try{
+					whenDrained.run();
+				} catch (RuntimeException e){
+					e.printStackTrace();
+				}
+			}
+		}
+		scheduled.set(false);
+		if(!quarantined && (!isEmpty() || (closing && !finished))){
+			schedule();
+		}
+	}
+}
@@ -0,0 +1,252 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+
+/**
+ * The Class ConsumerPool.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Keeps consumers whose question closed so the next question of the same
+ * group can reuse them, saving the frame and whatever else their constructors
+ * build.  Only ReusableConsumers are kept.  Instances are matched by plugin
+ * class and group, so a replaced plugin jar never hands out its old version.
+ *
+ * At most maxIdle instances are kept; past that, and after idleMillis unused,
+ * the oldest are evicted and handed to the EvictionListener to be let go.
+ *
+ */
+public class ConsumerPool {
+
+	/** How many idle instances are kept by default. */
+	public static final int DEFAULT_MAX_IDLE = 16;
+
+	/** How long an instance may sit unused by default, in milliseconds. */
+	public static final long DEFAULT_IDLE_MILLIS = 10 * 60 * 1000;
+
+	/**
+	 * The Interface EvictionListener.
+	 *
+	 * Told about every instance the pool lets go.
+	 */
+	public interface EvictionListener {
+
+		/**
+		 * Called, outside the pool's lock, for an instance the pool no longer keeps.
+		 *
+		 * @param consumer the instance
+		 */
+		public void evicted(ClickerConsumerInterface consumer);
+	}
+
+	/** Idle instances, oldest first. */
+	private final LinkedList<Idle> idle;
+
+	/** How many idle instances are kept. */
+	private final int maxIdle;
+
+	/** How long an instance may sit unused, in milliseconds. */
+	private final long idleMillis;
+
+	/** Lets evicted instances go. */
+	private final EvictionListener listener;
+
+	/** Plugin classes evicted for good, so instances still in use are not kept when they come back; weak, so the classes can still be unloaded. */
+	private final Set<Class<?>> evictedClasses;
+
+	/** How many instances were reused. */
+	private long hits;
+
+	/** How many times nothing could be reused. */
+	private long misses;
+
+	/**
+	 * Instantiates a new consumer pool.
+	 *
+	 * @param maxIdle how many idle instances are kept
+	 * @param idleMillis how long an instance may sit unused
+	 * @param listener lets evicted instances go
+	 */
+	public ConsumerPool(int maxIdle, long idleMillis, EvictionListener listener){
+		this.idle = new LinkedList<Idle>();
+		this.maxIdle = maxIdle;
+		this.idleMillis = idleMillis;
+		this.listener = listener;
+		this.evictedClasses = Collections.newSetFromMap(new WeakHashMap<Class<?>, Boolean>());
+	}
+
+	/**
+	 * Takes an idle instance of a plugin that last served a group.
+	 *
+	 * @param pluginClass the plugin class
+	 * @param group the group identifier
+	 * @return the instance, or null if there is none to reuse
+	 */
+	public ClickerConsumerInterface acquire(Class<?> pluginClass, String group){
+		List<ClickerConsumerInterface> evicted = new ArrayList<ClickerConsumerInterface>();
+		ClickerConsumerInterface found = null;
+		synchronized(this){
+			expire(System.currentTimeMillis(), evicted);
+			//most recently released first
+			Iterator<Idle> i = idle.descendingIterator();
+			while(i.hasNext()){
+				Idle candidate = i.next();
+				if(candidate.consumer.getClass() == pluginClass && candidate.group.equals(group)){
+					i.remove();
+					found = candidate.consumer;
+					break;
+				}
+			}
+			if(found == null){
+				misses++;
+			} else {
+				hits++;
+			}
+		}
+		notifyEvicted(evicted);
+		return found;
+	}
+
+	/**
+	 * Resets a consumer whose question closed and keeps it for reuse.
+	 *
+	 * @param group the group it served
+	 * @param consumer the instance
+	 * @return true, if the pool kept it; false if the caller must let it go
+	 */
+	public boolean release(String group, ClickerConsumerInterface consumer){
+		if(maxIdle <= 0 || !(consumer instanceof ReusableConsumer)){
+			return false;
+		}
+		synchronized(this){
+			if(evictedClasses.contains(consumer.getClass())){
+				return false;
+			}
+		}
+		try{
+			((ReusableConsumer) consumer).reset();
+		} catch (RuntimeException e){
+			e.printStackTrace();
+			return false;
+		}
+		List<ClickerConsumerInterface> evicted = new ArrayList<ClickerConsumerInterface>();
+		synchronized(this){
+			long now = System.currentTimeMillis();
+			idle.addLast(new Idle(group, consumer, now));
+			while(idle.size() > maxIdle){
+				evicted.add(idle.removeFirst().consumer);
+			}
+			expire(now, evicted);
+		}
+		notifyEvicted(evicted);
+		return true;
+	}
+
+	/**
+	 * Evicts every instance that has sat unused too long.
+	 */
+	public void evictIdle(){
+		List<ClickerConsumerInterface> evicted = new ArrayList<ClickerConsumerInterface>();
+		synchronized(this){
+			expire(System.currentTimeMillis(), evicted);
+		}
+		notifyEvicted(evicted);
+	}
+
+	/**
+	 * Evicts every instance of a plugin class, for example once its jar is
+	 * replaced.  Instances of it still in use are not kept when released.
+	 *
+	 * @param pluginClass the plugin class
+	 */
+	public void evict(Class<?> pluginClass){
+		List<ClickerConsumerInterface> evicted = new ArrayList<ClickerConsumerInterface>();
+		synchronized(this){
+			if(pluginClass != null){
+				evictedClasses.add(pluginClass);
+			}
+			Iterator<Idle> i = idle.iterator();
+			while(i.hasNext()){
+				Idle candidate = i.next();
+				if(candidate.consumer.getClass() == pluginClass){
+					i.remove();
+					evicted.add(candidate.consumer);
+				}
+			}
+		}
+		notifyEvicted(evicted);
+	}
+
+	/**
+	 * Describes the pool's counters, for the log.
+	 *
+	 * @return the statistics
+	 */
+	public synchronized String getStatistics(){
+		return "idle="+idle.size()+" reused="+hits+" built="+misses;
+	}
+
+	/**
+	 * Moves the instances unused since before idleMillis to the evicted list.
+	 * Call with the lock held.
+	 *
+	 * @param now the current time
+	 * @param evicted where to put them
+	 */
+	private void expire(long now, List<ClickerConsumerInterface> evicted){
+		while(!idle.isEmpty() && now - idle.getFirst().releasedAt > idleMillis){
+			evicted.add(idle.removeFirst().consumer);
+		}
+	}
+
+	/**
+	 * Hands evicted instances to the listener.
+	 *
+	 * @param evicted the instances
+	 */
+	private void notifyEvicted(List<ClickerConsumerInterface> evicted){
+		for(ClickerConsumerInterface consumer : evicted){
+			try{
+				listener.evicted(consumer);
+			} catch (RuntimeException e){
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * The Class Idle.
+	 *
+	 * An instance waiting to be reused.
+	 *
+	 */
+	private static class Idle {
+
+		/** The group it last served. */
+		private final String group;
+
+		/** The instance. */
+		private final ClickerConsumerInterface consumer;
+
+		/** When it was released. */
+		private final long releasedAt;
+
+		/**
+		 * Instantiates a new idle entry.
+		 *
+		 * @param group the group it last served
+		 * @param consumer the instance
+		 * @param releasedAt when it was released
+		 */
+		private Idle(String group, ClickerConsumerInterface consumer, long releasedAt){
+			this.group = group;
+			this.consumer = consumer;
+			this.releasedAt = releasedAt;
+		}
+	}
+}
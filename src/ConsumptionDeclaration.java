@@ -0,0 +1,155 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+
+/**
+ * The Class ConsumptionDeclaration.
+ *
+ * Property of University of Northern Iowa
+ *
+ * What a consumer returned from declareConsumptions(), parsed once when the
+ * consumer is loaded.  Expecting:
+ *
+ * name`/:formatting`/:widgetCount
+ *
+ * where formatting is All, Count or Avg, and widgetCount is only given for Avg.
+ *
+ * A consumer can publish the same string as a public static final String
+ * named DECLARATION_FIELD, so forClass() can read it without constructing the
+ * consumer and running its constructor (frames, sockets, robots).
+ *
+ */
+public class ConsumptionDeclaration {
+
+	//denote what a consumer is expecting answers to be formatted as
+	public static final String AVERAGE_FORMATTING = "Avg";
+
+	public static final String COUNT_FORMATTING = "Count";
+
+	public static final String ALL_FORMATTING = "All";
+
+	/** The static field a consumer class declares its consumption in. */
+	public static final String DECLARATION_FIELD = "CONSUMPTION_DECLARATION";
+
+	/** The declaration as the consumer returned it. */
+	private final String raw;
+
+	/** How the server knows the consumer. */
+	private final String key;
+
+	/** The name. */
+	private final String name;
+
+	/** The formatting, or null if the consumer declared none. */
+	private final String formatting;
+
+	/** How many values an Avg consumer averages, or -1 if not given. */
+	private final int widgetCount;
+
+	/**
+	 * Parses a declaration.
+	 *
+	 * @param declaration what declareConsumptions() returned
+	 */
+	public ConsumptionDeclaration(String declaration){
+		raw = declaration;
+		int comma = declaration.indexOf(',');
+		key = comma < 0 ? declaration : declaration.substring(0, comma);
+		ProtocolTokenizer parts = new ProtocolTokenizer(key, ProtocolTokenizer.COLON_SEPARATOR);
+		name = parts.next() ? parts.token() : "";
+		String formatting = null;
+		int widgetCount = -1;
+		if(parts.next()){
+			if(parts.tokenEqualsIgnoreCase(ALL_FORMATTING)){
+				formatting = ALL_FORMATTING;
+			} else if(parts.tokenEqualsIgnoreCase(COUNT_FORMATTING)){
+				formatting = COUNT_FORMATTING;
+			} else if(parts.tokenEqualsIgnoreCase(AVERAGE_FORMATTING)){
+				formatting = AVERAGE_FORMATTING;
+			}
+		}
+		if(parts.next()){
+			try{
+				widgetCount = parts.tokenToInt();
+			} catch (NumberFormatException e){
+				System.out.println("Bad widget count in consumption declaration "+declaration);
+			}
+		}
+		this.formatting = formatting;
+		this.widgetCount = widgetCount;
+	}
+
+	/**
+	 * Reads the declaration a consumer class publishes in DECLARATION_FIELD,
+	 * without constructing it.
+	 *
+	 * @param consumerClass the consumer class
+	 * @return the declaration, or null if the class does not publish one
+	 */
+	public static ConsumptionDeclaration forClass(Class<?> consumerClass){
+		try{
+			Field field = consumerClass.getField(DECLARATION_FIELD);
+			if(!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class){
+				return null;
+			}
+			String declaration = (String) field.get(null);
+			return declaration == null ? null : new ConsumptionDeclaration(declaration);
+		} catch (NoSuchFieldException e){
+			return null;
+		} catch (IllegalAccessException e){
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the declaration as the consumer returned it.
+	 *
+	 * @return the raw declaration
+	 */
+	public String getRaw(){
+		return raw;
+	}
+
+	/**
+	 * Gets the part of the declaration the server uses to name the consumer.
+	 *
+	 * @return the key
+	 */
+	public String getKey(){
+		return key;
+	}
+
+	/**
+	 * Gets the name.
+	 *
+	 * @return the name
+	 */
+	public String getName(){
+		return name;
+	}
+
+	/**
+	 * Gets the formatting.
+	 *
+	 * @return AVERAGE_FORMATTING, COUNT_FORMATTING, ALL_FORMATTING, or null if none was declared
+	 */
+	public String getFormatting(){
+		return formatting;
+	}
+
+	/**
+	 * Gets how many values an Avg consumer averages.
+	 *
+	 * @return the widget count, or -1 if not given
+	 */
+	public int getWidgetCount(){
+		return widgetCount;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString(){
+		return raw;
+	}
+}
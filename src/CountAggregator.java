@@ -0,0 +1,144 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * The Class CountAggregator.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Keeps the running "Count" totals for one group.  Every label a B, TOG or
+ * COMBO widget of the question can produce starts at zero; anything else a
+ * participant sends is counted from its first appearance and dropped again
+ * when nobody has it any more.
+ *
+ * Each answer only moves the counts of the values that changed, so the cost
+ * does not depend on how many participants have answered.
+ *
+ * Labels keep the order they were first seen in, so the question's own
+ * labels always have the same ordinals in every snapshot.
+ *
+ * Not thread safe: the totals belong to their group's lane, and consumers
+ * only ever see the immutable snapshots.
+ *
+ */
+public class CountAggregator {
+
+	/** The value sent for a widget that was left blank. */
+	private static final String NO_ANSWER = " ";
+
+	/** The counts. */
+	private Map<String, Tally> totals;	//label, count
+
+	/**
+	 * Instantiates a new count aggregator for a question, with every label its
+	 * widgets can produce at zero.
+	 *
+	 * @param question the question
+	 */
+	public CountAggregator(QuestionDescriptor question){
+		totals = new LinkedHashMap<String, Tally>();
+		for(String label : question.getChoiceLabels()){
+			seedLabel(label);
+		}
+	}
+
+	/**
+	 * Seeds a label at zero.
+	 *
+	 * @param label the label
+	 */
+	private void seedLabel(String label){
+		Tally tally = totals.get(label);
+		if(tally == null){
+			tally = new Tally();
+			totals.put(label, tally);
+		}
+		tally.seeded = true;
+	}
+
+	/**
+	 * Moves the counts from a participant's previous answers to their new ones.
+	 *
+	 * @param previousAnswers what the participant had answered, by widget index, or null if this is their first answer
+	 * @param newAnswers what the participant answered now, by widget index
+	 */
+	public void apply(String[] previousAnswers, String[] newAnswers){
+		if(previousAnswers != null){
+			for(String value : previousAnswers){
+				decrement(value);
+			}
+		}
+		for(String value : newAnswers){
+			increment(value);
+		}
+	}
+
+	/**
+	 * Counts one more answer with a value.
+	 *
+	 * @param value the value
+	 */
+	private void increment(String value){
+		if(value == null || value.equals(NO_ANSWER)){
+			return;
+		}
+		Tally tally = totals.get(value);
+		if(tally == null){
+			tally = new Tally();
+			totals.put(value, tally);
+		}
+		tally.count++;
+	}
+
+	/**
+	 * Counts one less answer with a value.
+	 *
+	 * @param value the value
+	 */
+	private void decrement(String value){
+		if(value == null || value.equals(NO_ANSWER)){
+			return;
+		}
+		Tally tally = totals.get(value);
+		if(tally == null){
+			return;
+		}
+		tally.count--;
+		if(tally.count <= 0 && !tally.seeded){
+			totals.remove(value);
+		}
+	}
+
+	/**
+	 * Gets the current counts.
+	 *
+	 * @return the counts, by label ordinal
+	 */
+	public CountSnapshot getSnapshot(){
+		String[] labels = new String[totals.size()];
+		int[] counts = new int[labels.length];
+		int i = 0;
+		for(Map.Entry<String, Tally> next : totals.entrySet()){
+			labels[i] = next.getKey();
+			counts[i] = next.getValue().count;
+			i++;
+		}
+		return new CountSnapshot(labels, counts);
+	}
+
+	/**
+	 * The Class Tally.
+	 *
+	 * A mutable count, so updating a label does not box.
+	 *
+	 */
+	private static class Tally {
+
+		/** The count. */
+		private int count;
+
+		/** Whether the question declared this label. */
+		private boolean seeded;
+	}
+}
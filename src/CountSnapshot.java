@@ -0,0 +1,143 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The Class CountSnapshot.
+ *
+ * Property of University of Northern Iowa
+ *
+ * The "Count" results of a group at one moment.  Labels are numbered by
+ * ordinal: the labels the question declares come first, in question order,
+ * then any other values participants sent.  Immutable.
+ *
+ */
+public class CountSnapshot implements ConsumerDelivery {
+
+	/** The key the counts are under in the map form. */
+	public static final String COUNT_KEY = "Count";
+
+	/** The labels, by ordinal. */
+	private final String[] labels;
+
+	/** The counts, by ordinal. */
+	private final int[] counts;
+
+	/** The map form, built the first time a legacy consumer needs it. */
+	private volatile Map<String, Map<String, String>> map;
+
+	/**
+	 * Instantiates a new count snapshot.  The arrays are kept, not copied.
+	 *
+	 * @param labels the labels, by ordinal
+	 * @param counts the counts, by ordinal
+	 */
+	public CountSnapshot(String[] labels, int[] counts){
+		this.labels = labels;
+		this.counts = counts;
+	}
+
+	/**
+	 * Gets how many labels there are.
+	 *
+	 * @return the label count
+	 */
+	public int getLabelCount(){
+		return labels.length;
+	}
+
+	/**
+	 * Gets a label.
+	 *
+	 * @param ordinal the ordinal
+	 * @return the label
+	 */
+	public String getLabel(int ordinal){
+		return labels[ordinal];
+	}
+
+	/**
+	 * Gets a count.
+	 *
+	 * @param ordinal the ordinal
+	 * @return the count
+	 */
+	public int getCount(int ordinal){
+		return counts[ordinal];
+	}
+
+	/**
+	 * Gets the ordinal of a label.
+	 *
+	 * @param label the label
+	 * @return the ordinal, or -1 if nobody has it
+	 */
+	public int indexOf(String label){
+		for(int i = 0; i < labels.length; i++){
+			if(labels[i].equals(label)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the count of a label.
+	 *
+	 * @param label the label
+	 * @return the count, 0 if nobody has it
+	 */
+	public int getCount(String label){
+		int ordinal = indexOf(label);
+		return ordinal < 0 ? 0 : counts[ordinal];
+	}
+
+	/**
+	 * Gets the largest count, for scaling a graph.
+	 *
+	 * @return the largest count, 0 if there are none
+	 */
+	public int getMaximum(){
+		int maximum = 0;
+		for(int count : counts){
+			maximum = Math.max(maximum, count);
+		}
+		return maximum;
+	}
+
+	/**
+	 * Gets the counts in the form inputData() takes.
+	 *
+	 * @return "Count" : label : count, read-only at both levels
+	 */
+	public Map<String, Map<String, String>> toMap(){
+		Map<String, Map<String, String>> built = map;
+		if(built == null){
+			Map<String, String> byLabel = new HashMap<String, String>();
+			for(int i = 0; i < labels.length; i++){
+				byLabel.put(labels[i], Integer.toString(counts[i]));
+			}
+			built = new HashMap<String, Map<String, String>>();
+			//shared by every consumer, so neither level may be changed
+			built.put(COUNT_KEY, Collections.unmodifiableMap(byLabel));
+			built = Collections.unmodifiableMap(built);
+			map = built;
+		}
+		return built;
+	}
+
+	/* (non-Javadoc)
+	 * @see ConsumerDelivery#deliverTo(TypedClickerConsumer)
+	 */
+	public void deliverTo(TypedClickerConsumer consumer){
+		consumer.countsChanged(this);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString(){
+		return toMap().toString();
+	}
+}
@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The Class DeliveryBatch.
+ *
+ * Property of University of Northern Iowa
+ *
+ * The deliveries a BatchConsumer gets in one call, oldest first.  Immutable.
+ *
+ */
+public class DeliveryBatch {
+
+	/** The deliveries. */
+	private final List<ConsumerDelivery> deliveries;
+
+	/**
+	 * Instantiates a new delivery batch.
+	 *
+	 * @param deliveries the deliveries, oldest first; not copied, must not change afterwards
+	 */
+	public DeliveryBatch(List<ConsumerDelivery> deliveries){
+		this.deliveries = Collections.unmodifiableList(deliveries);
+	}
+
+	/**
+	 * Gets how many deliveries the batch holds.
+	 *
+	 * @return the size
+	 */
+	public int size(){
+		return deliveries.size();
+	}
+
+	/**
+	 * Gets a delivery.
+	 *
+	 * @param index the position, 0 being the oldest
+	 * @return the delivery
+	 */
+	public ConsumerDelivery get(int index){
+		return deliveries.get(index);
+	}
+
+	/**
+	 * Gets the newest delivery, all a consumer showing only the latest
+	 * snapshot needs.
+	 *
+	 * @return the delivery
+	 */
+	public ConsumerDelivery getLatest(){
+		return deliveries.get(deliveries.size() - 1);
+	}
+
+	/**
+	 * Gets the deliveries.
+	 *
+	 * @return the deliveries, oldest first
+	 */
+	public List<ConsumerDelivery> getDeliveries(){
+		return deliveries;
+	}
+
+	/**
+	 * Gets the deliveries in the form inputData() takes.
+	 *
+	 * @return one map per delivery, oldest first
+	 */
+	public List<Map<String, Map<String, String>>> toMaps(){
+		List<Map<String, Map<String, String>>> maps = new ArrayList<Map<String, Map<String, String>>>(deliveries.size());
+		for(ConsumerDelivery delivery : deliveries){
+			maps.add(delivery.toMap());
+		}
+		return maps;
+	}
+}
@@ -0,0 +1,282 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The Class FrameRing.
+ *
+ * Property of University of Northern Iowa
+ *
+ * A fixed ring of reusable slots between the thread reading from the server
+ * (the only producer) and one processing lane (the only consumer).  Every
+ * slot is allocated up front, with a buffer the frame's characters are copied
+ * into, so handing a frame over allocates nothing and takes no lock: the
+ * producer fills the slot at the tail and moves the tail on, the consumer
+ * works through everything between head and tail and then moves the head on
+ * once for the whole batch.
+ *
+ * When the ring is full tryClaim() returns null and the producer decides
+ * what to do with the frame; it is never made to wait.  How full the ring
+ * is, now and at its worst, tells whether the lane keeps up.
+ *
+ */
+public class FrameRing {
+
+	/** How many slots a ring has by default. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** The slots. */
+	private final Slot[] slots;
+
+	/** capacity - 1, to turn a sequence into a slot index. */
+	private final int mask;
+
+	/** The next sequence the producer fills; written by the producer only. */
+	private final AtomicLong tail;
+
+	/** The next sequence the consumer reads; written by the consumer only. */
+	private final AtomicLong head;
+
+	/** The most slots ever in use at once. */
+	private volatile int highWater;
+
+	/**
+	 * Allocates a ring and all its slots.
+	 *
+	 * @param capacity how many slots, rounded up to a power of two
+	 */
+	public FrameRing(int capacity){
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		slots = new Slot[size];
+		for(int i = 0; i < size; i++){
+			slots[i] = new Slot();
+		}
+		mask = size - 1;
+		tail = new AtomicLong();
+		head = new AtomicLong();
+	}
+
+	/**
+	 * Gets the next slot to fill.  Producer only; fill the slot, then publish().
+	 *
+	 * @return the slot, or null if the ring is full
+	 */
+	public Slot tryClaim(){
+		long sequence = tail.get();
+		if(sequence - head.get() >= slots.length){
+			return null;
+		}
+		return slots[(int) sequence & mask];
+	}
+
+	/**
+	 * Hands the claimed slot to the consumer.  Producer only.
+	 */
+	public void publish(){
+		long sequence = tail.get() + 1;
+		tail.set(sequence);
+		int used = (int) (sequence - head.get());
+		if(used > highWater){
+			highWater = used;
+		}
+	}
+
+	/**
+	 * Gets how many slots are waiting for the consumer.  Consumer only, with
+	 * getSlot() and release().
+	 *
+	 * @return the count
+	 */
+	public int available(){
+		return (int) (tail.get() - head.get());
+	}
+
+	/**
+	 * Gets a waiting slot.  Consumer only.
+	 *
+	 * @param offset how far past the head, less than available()
+	 * @return the slot
+	 */
+	public Slot getSlot(int offset){
+		return slots[(int) (head.get() + offset) & mask];
+	}
+
+	/**
+	 * Gives slots back to the producer once they have been handled.  Consumer only.
+	 *
+	 * @param count how many, from the head
+	 */
+	public void release(int count){
+		head.set(head.get() + count);
+	}
+
+	/**
+	 * Checks if nothing is waiting.
+	 *
+	 * @return true, if empty
+	 */
+	public boolean isEmpty(){
+		return tail.get() == head.get();
+	}
+
+	/**
+	 * Gets how many slots are in use.
+	 *
+	 * @return the occupancy
+	 */
+	public int getOccupancy(){
+		return (int) (tail.get() - head.get());
+	}
+
+	/**
+	 * Gets the most slots ever in use at once.
+	 *
+	 * @return the high water mark
+	 */
+	public int getHighWater(){
+		return highWater;
+	}
+
+	/**
+	 * Gets how many slots the ring has.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity(){
+		return slots.length;
+	}
+
+	/**
+	 * The Class Slot.
+	 *
+	 * One reusable entry of the ring.  The producer fills it with set(); the
+	 * consumer clears the references it should not keep alive.
+	 *
+	 */
+	public static class Slot {
+
+		/** What kind of frame this is; the meaning is up to the producer and consumer. */
+		private int kind;
+
+		/** The id of the group the frame is for. */
+		private int group;
+
+		/** The group name, or another identifier the frame needs. */
+		private String name;
+
+		/** An object that goes with the frame, such as an already parsed question. */
+		private Object attachment;
+
+		/** Where the frame comes in the order it was routed; the meaning is up to the producer and consumer. */
+		private long sequence;
+
+		/** Whether the consumer has already handled the frame, ahead of its turn. */
+		private boolean handled;
+
+		/** The frame's characters. */
+		private final StringBuilder frame = new StringBuilder(128);
+
+		/**
+		 * Fills the slot.
+		 *
+		 * @param kind the kind
+		 * @param group the group's id
+		 * @param name the group name
+		 * @param attachment what goes with the frame, may be null
+		 * @param text the frame, may be null
+		 */
+		public void set(int kind, int group, String name, Object attachment, CharSequence text){
+			this.kind = kind;
+			this.group = group;
+			this.name = name;
+			this.attachment = attachment;
+			this.handled = false;
+			frame.setLength(0);
+			if(text != null){
+				frame.append(text);
+			}
+		}
+
+		/**
+		 * Gets the kind.
+		 *
+		 * @return the kind
+		 */
+		public int getKind(){
+			return kind;
+		}
+
+		/**
+		 * Gets the group's id.
+		 *
+		 * @return the group id
+		 */
+		public int getGroup(){
+			return group;
+		}
+
+		/**
+		 * Gets the group name.
+		 *
+		 * @return the name
+		 */
+		public String getName(){
+			return name;
+		}
+
+		/**
+		 * Gets what goes with the frame.
+		 *
+		 * @return the attachment, may be null
+		 */
+		public Object getAttachment(){
+			return attachment;
+		}
+
+		/**
+		 * Gets where the frame comes in the order it was routed.
+		 *
+		 * @return the sequence
+		 */
+		public long getSequence(){
+			return sequence;
+		}
+
+		/**
+		 * Sets where the frame comes in the order it was routed.  Producer only,
+		 * before the slot is handed over.
+		 *
+		 * @param sequence the sequence
+		 */
+		public void setSequence(long sequence){
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Checks if the consumer has already handled the frame.
+		 *
+		 * @return true, if handled
+		 */
+		public boolean isHandled(){
+			return handled;
+		}
+
+		/**
+		 * Gets the frame's characters.  Only valid until the slot is released.
+		 *
+		 * @return the frame
+		 */
+		public CharSequence getFrame(){
+			return frame;
+		}
+
+		/**
+		 * Marks the frame handled and drops the references the slot holds.
+		 * Consumer only.
+		 */
+		public void clear(){
+			handled = true;
+			name = null;
+			attachment = null;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The Class GroupAnswers.
+ *
+ * Property of University of Northern Iowa
+ *
+ * The current answers of every participant in one group, for the question
+ * the group has open, kept as a dictionary encoded table.  Every distinct
+ * answer value gets a small code: the labels the question's widgets offer are
+ * coded when the question opens, and free-text values are added as they first
+ * arrive.  The answers themselves are one short per widget, in a single array
+ * laid out participant by participant, so a room of a thousand holds a few
+ * kilobytes of codes rather than a map per participant.
+ *
+ * Participants are interned into dense ids as they first answer, and their
+ * row in the table is their id.  Code 0 means the widget was not answered.
+ * Should a question ever collect more distinct values than a short can code,
+ * the extra ones are kept, uncoded, beside the table.
+ *
+ * Not thread safe: the table belongs to its group's lane.
+ *
+ */
+public class GroupAnswers {
+
+	/** The code of a widget that was not answered. */
+	private static final short NO_VALUE = 0;
+
+	/** The code of a value kept beside the table because the dictionary is full. */
+	private static final short UNCODED = -1;
+
+	/** The participants' ids, which are their rows. */
+	private final SymbolTable participants;
+
+	/** The answer values; a value's code is its id + 1. */
+	private final SymbolTable dictionary;
+
+	/** The answer codes, row by row: participant id * width + widget index. */
+	private short[] codes;
+
+	/** How many widgets each participant sent, by participant id. */
+	private short[] widths;
+
+	/** How many widget columns a row has. */
+	private int width;
+
+	/** Values that could not be coded, by their position in codes. */
+	private Map<Integer, String> uncoded;
+
+	/**
+	 * Instantiates a new answer table for a group's question, with the labels its
+	 * widgets can produce already coded.
+	 *
+	 * @param question the question
+	 * @param group the group
+	 */
+	public GroupAnswers(QuestionDescriptor question, String group){
+		participants = new SymbolTable();
+		dictionary = new SymbolTable();
+		for(String label : question.getChoiceLabels()){
+			dictionary.intern(label);
+		}
+		width = Math.max(question.getWidgetCount(), 1);
+		int rows = Math.max(question.getParticipantCount(group), 16);
+		codes = new short[rows * width];
+		widths = new short[rows];
+	}
+
+	/**
+	 * Records a participant's answers.
+	 *
+	 * @param participant the participant
+	 * @param values the answers, by widget index
+	 * @return what the participant had answered before, or null if nothing
+	 */
+	public String[] put(String participant, String[] values){
+		int known = participants.size();
+		int id = participants.intern(participant);
+		if(values.length > width){
+			widen(values.length);
+		}
+		if(id >= widths.length){
+			grow(id + 1);
+		}
+		String[] previous = id < known ? decode(id) : null;
+		int row = id * width;
+		for(int i = 0; i < width; i++){
+			codes[row + i] = i < values.length ? encode(values[i], row + i) : NO_VALUE;
+		}
+		widths[id] = (short) values.length;
+		return previous;
+	}
+
+	/**
+	 * Gets how many participants have answered; their ids run from 0 to
+	 * getParticipantCount() - 1.
+	 *
+	 * @return the participant count
+	 */
+	public int getParticipantCount(){
+		return participants.size();
+	}
+
+	/**
+	 * Gets a participant's name.
+	 *
+	 * @param id the participant id
+	 * @return the name
+	 */
+	public String getParticipant(int id){
+		return participants.getName(id);
+	}
+
+	/**
+	 * Gets a participant's answers.
+	 *
+	 * @param id the participant id
+	 * @return the answers, by widget index
+	 */
+	public String[] getAnswers(int id){
+		return decode(id);
+	}
+
+	/**
+	 * Codes a value, adding it to the dictionary if it is new.
+	 *
+	 * @param value the value, may be null
+	 * @param position where in codes it goes
+	 * @return the code
+	 */
+	private short encode(String value, int position){
+		if(uncoded != null){
+			uncoded.remove(position);
+		}
+		if(value == null){
+			return NO_VALUE;
+		}
+		int id = dictionary.lookUp(value);
+		if(id == SymbolTable.NOT_FOUND){
+			if(dictionary.size() >= Short.MAX_VALUE){
+				if(uncoded == null){
+					uncoded = new HashMap<Integer, String>();
+				}
+				uncoded.put(position, value);
+				return UNCODED;
+			}
+			id = dictionary.intern(value);
+		}
+		return (short) (id + 1);
+	}
+
+	/**
+	 * Decodes a participant's row.
+	 *
+	 * @param id the participant id
+	 * @return the answers, by widget index
+	 */
+	private String[] decode(int id){
+		String[] values = new String[widths[id]];
+		int row = id * width;
+		for(int i = 0; i < values.length; i++){
+			short code = codes[row + i];
+			if(code == UNCODED){
+				values[i] = uncoded.get(row + i);
+			} else if(code != NO_VALUE){
+				values[i] = dictionary.getName(code - 1);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Makes room for more participants.
+	 *
+	 * @param rows how many rows are needed
+	 */
+	private void grow(int rows){
+		int newRows = Math.max(rows, widths.length * 2);
+		short[] newCodes = new short[newRows * width];
+		System.arraycopy(codes, 0, newCodes, 0, codes.length);
+		short[] newWidths = new short[newRows];
+		System.arraycopy(widths, 0, newWidths, 0, widths.length);
+		codes = newCodes;
+		widths = newWidths;
+	}
+
+	/**
+	 * Makes room for more widgets than the question declared, relaying every row.
+	 *
+	 * @param newWidth how many widget columns are needed
+	 */
+	private void widen(int newWidth){
+		int rows = widths.length;
+		short[] newCodes = new short[rows * newWidth];
+		Map<Integer, String> newUncoded = uncoded == null ? null : new HashMap<Integer, String>();
+		for(int id = 0; id < rows; id++){
+			System.arraycopy(codes, id * width, newCodes, id * newWidth, width);
+			if(uncoded != null){
+				for(int i = 0; i < width; i++){
+					String value = uncoded.get(id * width + i);
+					if(value != null){
+						newUncoded.put(id * newWidth + i, value);
+					}
+				}
+			}
+		}
+		codes = newCodes;
+		uncoded = newUncoded;
+		width = newWidth;
+	}
+}
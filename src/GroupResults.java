@@ -0,0 +1,112 @@
+
+/**
+ * The Class GroupResults.
+ *
+ * Property of University of Northern Iowa
+ *
+ * The results of one group's question at one moment: its counts, its
+ * averages and how many participants have answered, with the version they
+ * were published under.  Immutable; a new GroupResults is published for
+ * every answer.
+ *
+ */
+public class GroupResults {
+
+	/** The group. */
+	private final String group;
+
+	/** The question's ID. */
+	private final String questionID;
+
+	/** The group's version, higher for every later publication for the group. */
+	private final long version;
+
+	/** The counts. */
+	private final CountSnapshot counts;
+
+	/** The averages. */
+	private final AverageSnapshot averages;
+
+	/** How many participants have answered. */
+	private final int answered;
+
+	/**
+	 * Instantiates new group results.
+	 *
+	 * @param group the group
+	 * @param questionID the question's ID
+	 * @param version the version
+	 * @param counts the counts
+	 * @param averages the averages
+	 * @param answered how many participants have answered
+	 */
+	public GroupResults(String group, String questionID, long version, CountSnapshot counts, AverageSnapshot averages, int answered){
+		this.group = group;
+		this.questionID = questionID;
+		this.version = version;
+		this.counts = counts;
+		this.averages = averages;
+		this.answered = answered;
+	}
+
+	/**
+	 * Gets the group.
+	 *
+	 * @return the group
+	 */
+	public String getGroup(){
+		return group;
+	}
+
+	/**
+	 * Gets the question's ID.
+	 *
+	 * @return the question ID
+	 */
+	public String getQuestionID(){
+		return questionID;
+	}
+
+	/**
+	 * Gets the version.  A reader holding an older version knows the results changed.
+	 *
+	 * @return the version
+	 */
+	public long getVersion(){
+		return version;
+	}
+
+	/**
+	 * Gets the counts.
+	 *
+	 * @return the counts
+	 */
+	public CountSnapshot getCounts(){
+		return counts;
+	}
+
+	/**
+	 * Gets the averages.
+	 *
+	 * @return the averages
+	 */
+	public AverageSnapshot getAverages(){
+		return averages;
+	}
+
+	/**
+	 * Gets how many participants have answered.
+	 *
+	 * @return the participant count
+	 */
+	public int getAnswered(){
+		return answered;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString(){
+		return group+" v"+version+" "+questionID+": "+counts+" "+averages;
+	}
+}
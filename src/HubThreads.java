@@ -0,0 +1,295 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * The Class HubThreads.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Creates every thread the hub uses, so they can all be switched between
+ * platform threads and virtual threads in one place.  The mode is taken from
+ * the imp.threads system property ("platform" or "virtual") and defaults to
+ * platform.  Virtual threads are looked up reflectively, so on a JVM without
+ * them the hub falls back to platform threads.
+ *
+ * Consumers that drive Swing or java.awt.Robot always get platform threads,
+ * whatever the mode: they are java.awt.Components, or implement
+ * NeedsPlatformThread.
+ *
+ * Platform pools are bounded.  A consumer stuck in inputData() holds its
+ * thread until the call returns, even once its mailbox is quarantined, so
+ * the delivery pool is allowed several threads per processor (set with
+ * imp.delivery.threads) and lets the ones it does not need time out.  Should
+ * that many consumers be stuck at once, further deliveries wait in the
+ * pool's queue rather than adding threads.
+ *
+ */
+public class HubThreads {
+
+	/**
+	 * The Enum Mode.
+	 */
+	public enum Mode {
+
+		/** Ordinary operating system threads. */
+		PLATFORM,
+
+		/** Virtual threads, which cost almost nothing while blocked. */
+		VIRTUAL
+	}
+
+	/** The system property that selects the mode. */
+	public static final String MODE_PROPERTY = "imp.threads";
+
+	/** The system property that bounds the platform delivery pool. */
+	public static final String DELIVERY_THREADS_PROPERTY = "imp.delivery.threads";
+
+	/** How long an unused pool thread is kept, in seconds. */
+	private static final long POOL_KEEP_ALIVE_SECONDS = 60;
+
+	/** The mode in use. */
+	private static final Mode mode;
+
+	/** Makes virtual threads, or null if the JVM has none. */
+	private static final ThreadFactory virtualFactory;
+
+	static {
+		virtualFactory = lookUpVirtualFactory();
+		String requested = System.getProperty(MODE_PROPERTY, "platform");
+		if(requested.equalsIgnoreCase("virtual")){
+			if(virtualFactory != null){
+				mode = Mode.VIRTUAL;
+			} else {
+				System.out.println("Virtual threads are not available on this JVM, using platform threads");
+				mode = Mode.PLATFORM;
+			}
+		} else {
+			mode = Mode.PLATFORM;
+		}
+	}
+
+	/**
+	 * Not instantiable.
+	 */
+	private HubThreads(){
+
+	}
+
+	/**
+	 * Finds Thread.ofVirtual().factory() on JVMs that have it.
+	 *
+	 * @return the factory, or null
+	 */
+	private static ThreadFactory lookUpVirtualFactory(){
+		try{
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Method name = builderClass.getMethod("name", String.class, long.class);
+			builder = name.invoke(builder, "IMP-virtual-", 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (Exception e){
+			return null;
+		} catch (LinkageError e){
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the mode in use.
+	 *
+	 * @return the mode
+	 */
+	public static Mode getMode(){
+		return mode;
+	}
+
+	/**
+	 * Makes a thread in the current mode.  It is not started.
+	 *
+	 * @param name the thread name
+	 * @param task what the thread runs
+	 * @return the thread
+	 */
+	public static Thread newThread(String name, Runnable task){
+		Thread thread;
+		if(mode == Mode.VIRTUAL){
+			thread = virtualFactory.newThread(task);
+			thread.setName(name);
+		} else {
+			thread = new Thread(task, name);
+		}
+		return thread;
+	}
+
+	/**
+	 * Makes the executor that serves consumer mailboxes.  In virtual mode this
+	 * is Executors.newVirtualThreadPerTaskExecutor(), which starts a virtual
+	 * thread per task and keeps track of them until it is shut down; otherwise
+	 * it is the same kind of pool as newPlatformDeliveryPool().
+	 *
+	 * @return the executor
+	 */
+	public static ExecutorService newDeliveryExecutor(){
+		if(mode == Mode.VIRTUAL){
+			try{
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (Exception e){
+				System.out.println("Could not make a virtual thread executor, delivering on platform threads: "+e);
+			}
+		}
+		return newPlatformDeliveryPool();
+	}
+
+	/**
+	 * Makes a pool of platform threads for consumers that need one: up to
+	 * imp.delivery.threads of them, four per processor by default.
+	 *
+	 * @return the pool
+	 */
+	public static ExecutorService newPlatformDeliveryPool(){
+		int threads = 4 * Runtime.getRuntime().availableProcessors();
+		try{
+			threads = Integer.parseInt(System.getProperty(DELIVERY_THREADS_PROPERTY, ""+threads));
+		} catch (NumberFormatException e){
+			System.out.println("Bad "+DELIVERY_THREADS_PROPERTY+", using "+threads);
+		}
+		return newPlatformPool("IMP-delivery-", threads);
+	}
+
+	/**
+	 * Makes a pool of platform threads for building and starting consumers,
+	 * which create frames, robots and sockets.
+	 *
+	 * @return the pool
+	 */
+	public static ExecutorService newPreparationPool(){
+		return newPlatformPool("IMP-prepare-", Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Makes the thread the transport's event loop runs on: a daemon platform
+	 * thread, in either mode, since it spends its time in select().  It is
+	 * not started.
+	 *
+	 * @param loop what the thread runs
+	 * @return the thread
+	 */
+	public static Thread newTransportThread(Runnable loop){
+		Thread thread = new Thread(loop, "IMP-transport");
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Makes the thread of one of the lanes group state is processed on: a
+	 * daemon platform thread, in either mode, since the work never blocks.
+	 * It is not started.
+	 *
+	 * @param index the lane number
+	 * @param lane what the thread runs
+	 * @return the thread
+	 */
+	public static Thread newLaneThread(int index, Runnable lane){
+		Thread thread = new Thread(lane, "IMP-lane-"+index);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Makes a pool of at most the given number of daemon platform threads, but
+	 * at least two.  Threads are started as tasks arrive and stop after a
+	 * minute unused; once all are busy, tasks queue.
+	 *
+	 * @param prefix the thread name prefix
+	 * @param threads the most threads the pool runs
+	 * @return the pool
+	 */
+	private static ExecutorService newPlatformPool(String prefix, int threads){
+		int bound = Math.max(2, threads);
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(bound, bound, POOL_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new NamedFactory(prefix, true));
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * Makes a single threaded scheduler in the current mode, for work tied to
+	 * one connection.  Shut it down with the connection.
+	 *
+	 * @param name the thread name
+	 * @return the scheduler
+	 */
+	public static ScheduledExecutorService newScheduler(final String name){
+		ThreadFactory factory;
+		if(mode == Mode.VIRTUAL){
+			factory = new ThreadFactory(){
+				public Thread newThread(Runnable task){
+					Thread thread = virtualFactory.newThread(task);
+					thread.setName(name);
+					return thread;
+				}
+			};
+		} else {
+			factory = new NamedFactory(name, true);
+		}
+		return new ScheduledThreadPoolExecutor(1, factory);
+	}
+
+	/**
+	 * Checks if a consumer must be served by a platform thread: it is a Swing
+	 * component, or says so by implementing NeedsPlatformThread.
+	 *
+	 * @param consumer the consumer
+	 * @return true, if it needs a platform thread
+	 */
+	public static boolean needsPlatformThread(Object consumer){
+		return consumer instanceof java.awt.Component || consumer instanceof NeedsPlatformThread;
+	}
+
+	/**
+	 * The Class NamedFactory.
+	 *
+	 * Makes numbered platform threads.
+	 *
+	 */
+	private static class NamedFactory implements ThreadFactory {
+
+		/** The name prefix. */
+		private final String prefix;
+
+		/** Whether the threads are daemons. */
+		private final boolean daemon;
+
+		/** The next thread number. */
+		private final AtomicInteger count = new AtomicInteger();
+
+		/**
+		 * Instantiates a new named factory.
+		 *
+		 * @param prefix the name prefix
+		 * @param daemon whether the threads are daemons
+		 */
+		private NamedFactory(String prefix, boolean daemon){
+			this.prefix = prefix;
+			this.daemon = daemon;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+		 */
+		public Thread newThread(Runnable task){
+			Thread thread = new Thread(task, prefix + count.getAndIncrement());
+			thread.setDaemon(daemon);
+			return thread;
+		}
+	}
+}
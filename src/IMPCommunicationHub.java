@@ -1,23 +1,24 @@
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.lang.reflect.Modifier;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
-import java.net.Socket;
 import java.net.SocketAddress;
-import java.net.SocketException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -38,11 +39,11 @@ import java.util.TimerTask;
 public class IMPCommunicationHub extends CommunicationHub{
 
 	//denote what a consumer is expecting answers to be formatted as
-	private static final String AVERAGE_FORMATTING = "Avg";
+	private static final String AVERAGE_FORMATTING = ConsumptionDeclaration.AVERAGE_FORMATTING;
 	
-	private static final String COUNT_FORMATTING = "Count";
+	private static final String COUNT_FORMATTING = ConsumptionDeclaration.COUNT_FORMATTING;
 	
-	private static final String ALL_FORMATTING = "All";
+	private static final String ALL_FORMATTING = ConsumptionDeclaration.ALL_FORMATTING;
 
 	//delimiters
 	private static String SEMI_COLON_SEPARATOR = "`/;";
@@ -57,25 +58,25 @@ public class IMPCommunicationHub extends CommunicationHub{
 
 	
 	/** For connection to the server */
-	private Socket socket;
+	private ChannelTransport.Connection connection;
 	
 	/** Manages connection to the server */
 	private Reconnecter reconnecter; 
 	
 	/** Used to monitor state of connection to the server */
-	private boolean waitingForHeartbeat = false;
+	private volatile boolean waitingForHeartbeat = false;
 	
-	/** Used to check status of the connection */
-	private Timer heartbeatTimer;
+	/** Set by every frame from the server, so a busy connection counts as alive while the heartbeat reply waits behind answers */
+	private volatile boolean heardFromServer = false;
 	
-	/** interval for heartbeatTimer*/
-	private int heartbeatSeconds = 15;
+	/** Used to check status of the connection; lives as long as the connection */
+	private ScheduledExecutorService heartbeatScheduler;
 	
-	/** The reader. */
-	private BufferedReader reader;
+	/** Ends the linger before a batch consumer's batch; lives as long as the connection */
+	private ScheduledExecutorService batchTimer;
 	
-	/** The writer. */
-	private PrintWriter writer;
+	/** interval for heartbeatScheduler*/
+	private int heartbeatSeconds = 15;
 	
 	/** The server ip address. */
 	private String serverIP;
@@ -94,7 +95,7 @@ public class IMPCommunicationHub extends CommunicationHub{
 
 
 	/** The accepted consumers. */
-	private String[] acceptedConsumers;
+	private List<String> acceptedConsumers;
 	
 	/** The consumer instance. */
 	private static ClickerConsumerInterface consumerInstance;
@@ -102,23 +103,99 @@ public class IMPCommunicationHub extends CommunicationHub{
 	/** The consumer class. */
 	private static Class<? extends ClickerConsumerInterface> consumerClass;
 	
+	/** Where what was found in ./consumers is remembered between launches, beside the directory. */
+	private static final String PLUGIN_INDEX_FILE = "consumers.index";
+
+	/** The consumers directory. */
+	private File consumerDirectory;
+
+	/** What was found in the consumers directory, kept for reloading jars. */
+	private PluginIndex pluginIndex;
+
+	/** Consumers kept between questions for reuse. */
+	private ConsumerPool consumerPool;
+
+	/** How many consumers the pool keeps; set with -Dimp.pool.size (0 turns pooling off) */
+	private int poolSize = ConsumerPool.DEFAULT_MAX_IDLE;
+
+	/** How long a pooled consumer may sit unused; set with -Dimp.pool.idle (seconds) */
+	private long poolIdleMillis = ConsumerPool.DEFAULT_IDLE_MILLIS;
+
+	/** Plugin jars loaded, by file name. */
+	private Map<String, PluginJar> pluginJars;
+
+	/** Plugin jars by their class loader, until the loader is closed. */
+	private Map<ClassLoader, PluginJar> jarsByLoader;
+
+	/** Watches the consumers directory for plugin jars being replaced. */
+	private PluginWatcher pluginWatcher;
+
 	/** The available consumers. */
-	private Map<String, Class<? extends ClickerConsumerInterface>> availableConsumers;//widget identifier, widget class object
+	private Map<String, ConsumerFactory> availableConsumers;//widget identifier, factory for the widget class
 	
-	/** The disabled consumers. */
-	private Map<String, Class<? extends ClickerConsumerInterface>> disabledConsumers;//Consumers which have been disabled from the visual
+	/** What each consumer declared, parsed when it was loaded. */
+	private Map<String, ConsumptionDeclaration> consumerDeclarations;//widget identifier, declaration
 	
-	/** The active consumer array. */
-	private Map<String, ArrayList<ClickerConsumerInterface>> activeConsumerArray;//group identifier, specific widget instance
+	/** The disabled consumers. */
+	private Map<String, ConsumerFactory> disabledConsumers;//Consumers which have been disabled from the visual
 	
-	/** The all answer array. */
-	private Map<String, Map<String, Map<String, String>>> allAnswerArray;		//group identifier, <individual identifier, <label, value> > >
+	/** The groups' ids; only touched by the thread reading from the server. */
+	private SymbolTable groups;
 	
-	/** The count answer array. */
-	private Map<String, Map<String, Map<String, String>>> countAnswerArray;     //group identifier, <individual identifier, <index, value> > >
+	/** Every group's state, one table per lane, each only touched by its lane's thread. */
+	private List<IntTable<GroupState>> laneStates;//lane, <group id, state>
+
+	/** Walks the answers routed to each lane, one per lane, each only touched by its lane's thread. */
+	private List<ProtocolTokenizer> answerTokenizers;
 	
-	/** The average answer array. */
-	private Map<String, Map<String, Map<String, String>>> averageAnswerArray;   //group identifier, <widget index, <"Average", value> > >
+	/** Serves every consumer mailbox; virtual threads in virtual mode. */
+	private ExecutorService deliveryExecutor;
+
+	/** Owns each group's state; every change to a group runs on its lane. */
+	private ProcessingLanes lanes;
+
+	/** How many lanes group state is sharded over; set with -Dimp.lanes */
+	private int laneCount = Runtime.getRuntime().availableProcessors();
+
+	/** How many frames can wait for each lane; set with -Dimp.ring.size */
+	private int ringCapacity = FrameRing.DEFAULT_CAPACITY;
+
+	/** How many more frames can wait for each lane once its ring is full; set with -Dimp.spill.limit (defaults to a multiple of the ring size) */
+	private int spillLimit;
+
+	/** A routed frame that opens a group's question. */
+	private static final int OPEN_FRAME = 0;
+
+	/** A routed frame that closes a group's question. */
+	private static final int CLOSE_FRAME = 1;
+
+	/** A routed frame holding a participant's answer. */
+	private static final int ANSWER_FRAME = 2;
+
+	/** Builds and starts consumers when a question opens, off the reading thread. */
+	private ExecutorService preparationPool;
+
+	/** Platform threads for consumers that need them (Swing, Robot). */
+	private ExecutorService platformDeliveryPool;
+
+	/** How many deliveries can wait for a consumer; set with -Dimp.mailbox.capacity */
+	private int mailboxCapacity = ConsumerMailbox.DEFAULT_CAPACITY;
+
+	/** What a full mailbox does; set with -Dimp.mailbox.policy=DROP_OLDEST|DROP_NEWEST|DEGRADE */
+	private ConsumerMailbox.OverflowPolicy overflowPolicy = ConsumerMailbox.OverflowPolicy.DROP_OLDEST;
+
+	/** How long a consumer's inputData() may take; set with -Dimp.mailbox.deadline (milliseconds) */
+	private long deliveryDeadlineMillis = ConsumerMailbox.DEFAULT_DEADLINE_MILLIS;
+
+	/** How many deliveries a batch consumer gets at most in one call; set with -Dimp.batch.size */
+	private int maxBatchSize = ConsumerMailbox.DEFAULT_MAX_BATCH;
+
+	/** How long a batch consumer's batch waits to fill; set with -Dimp.batch.linger (milliseconds) */
+	private long batchLingerMillis = ConsumerMailbox.DEFAULT_LINGER_MILLIS;
+
+
+	/** Where each group's latest counts and averages are published. */
+	private IMPModel model;
 
 	/** The consumption string. */
 	private String consumptionString;
@@ -126,8 +203,13 @@ public class IMPCommunicationHub extends CommunicationHub{
 	/** The temp string. */
 	private static String tempString;
 	
-	/** The current question. */
-	private Map<String, String> currentQuestion;
+	/** Walks incoming lines; only touched by the reading thread. */
+	private ProtocolTokenizer lineTokenizer = new ProtocolTokenizer();
+
+	/** Walks a field of the current line; only touched by the reading thread. */
+	private ProtocolTokenizer fieldTokenizer = new ProtocolTokenizer();
+
+
 
 	/** My Instance of myself */
 	private static IMPCommunicationHub _instance;
@@ -136,8 +218,83 @@ public class IMPCommunicationHub extends CommunicationHub{
 	 * Instantiates a new instance of myself
 	 */
 	private IMPCommunicationHub() {
+		loadDeliverySettings();
+		consumerPool = new ConsumerPool(poolSize, poolIdleMillis, new ConsumerPool.EvictionListener(){
+			public void evicted(ClickerConsumerInterface cci){
+				cci.setActiveStatus(false);
+				releasePluginInstance(cci);
+			}
+		});
 		loadConsumersFromSubdirectory();
-		currentQuestion = Collections.synchronizedMap(new HashMap<String, String>());
+		platformDeliveryPool = HubThreads.newPlatformDeliveryPool();
+		preparationPool = HubThreads.newPreparationPool();
+		laneStates = new ArrayList<IntTable<GroupState>>();
+		answerTokenizers = new ArrayList<ProtocolTokenizer>();
+		for(int i = 0; i < laneCount; i++){
+			laneStates.add(new IntTable<GroupState>());
+			answerTokenizers.add(new ProtocolTokenizer());
+		}
+		lanes = new ProcessingLanes(laneCount, ringCapacity, spillLimit, new LaneHandler());
+		deliveryExecutor = HubThreads.getMode() == HubThreads.Mode.VIRTUAL ? HubThreads.newDeliveryExecutor() : platformDeliveryPool;
+		System.out.println("Using "+HubThreads.getMode()+" threads");
+	}
+
+	/**
+	 * Reads the mailbox and pool limits from system properties, keeping the defaults
+	 * for anything missing or malformed.
+	 */
+	private void loadDeliverySettings(){
+		try{
+			mailboxCapacity = Math.max(1, Integer.parseInt(System.getProperty("imp.mailbox.capacity", ""+mailboxCapacity)));
+		} catch (NumberFormatException e){
+			System.out.println("Bad imp.mailbox.capacity, using "+mailboxCapacity);
+		}
+		try{
+			overflowPolicy = ConsumerMailbox.OverflowPolicy.valueOf(System.getProperty("imp.mailbox.policy", overflowPolicy.name()).toUpperCase());
+		} catch (IllegalArgumentException e){
+			System.out.println("Bad imp.mailbox.policy, using "+overflowPolicy);
+		}
+		try{
+			deliveryDeadlineMillis = Math.max(1, Long.parseLong(System.getProperty("imp.mailbox.deadline", ""+deliveryDeadlineMillis)));
+		} catch (NumberFormatException e){
+			System.out.println("Bad imp.mailbox.deadline, using "+deliveryDeadlineMillis);
+		}
+		try{
+			maxBatchSize = Math.max(1, Integer.parseInt(System.getProperty("imp.batch.size", ""+maxBatchSize)));
+		} catch (NumberFormatException e){
+			System.out.println("Bad imp.batch.size, using "+maxBatchSize);
+		}
+		try{
+			batchLingerMillis = Math.max(0, Long.parseLong(System.getProperty("imp.batch.linger", ""+batchLingerMillis)));
+		} catch (NumberFormatException e){
+			System.out.println("Bad imp.batch.linger, using "+batchLingerMillis);
+		}
+		try{
+			laneCount = Math.max(1, Integer.parseInt(System.getProperty("imp.lanes", ""+laneCount)));
+		} catch (NumberFormatException e){
+			System.out.println("Bad imp.lanes, using "+laneCount);
+		}
+		try{
+			ringCapacity = Math.max(2, Integer.parseInt(System.getProperty("imp.ring.size", ""+ringCapacity)));
+		} catch (NumberFormatException e){
+			System.out.println("Bad imp.ring.size, using "+ringCapacity);
+		}
+		spillLimit = ProcessingLanes.DEFAULT_SPILL_FACTOR * ringCapacity;
+		try{
+			spillLimit = Math.max(1, Integer.parseInt(System.getProperty("imp.spill.limit", ""+spillLimit)));
+		} catch (NumberFormatException e){
+			System.out.println("Bad imp.spill.limit, using "+spillLimit);
+		}
+		try{
+			poolSize = Math.max(0, Integer.parseInt(System.getProperty("imp.pool.size", ""+poolSize)));
+		} catch (NumberFormatException e){
+			System.out.println("Bad imp.pool.size, using "+poolSize);
+		}
+		try{
+			poolIdleMillis = 1000 * Math.max(1, Long.parseLong(System.getProperty("imp.pool.idle", ""+poolIdleMillis / 1000)));
+		} catch (NumberFormatException e){
+			System.out.println("Bad imp.pool.idle, using "+poolIdleMillis / 1000);
+		}
 	}
 
 	/**
@@ -174,10 +331,12 @@ public class IMPCommunicationHub extends CommunicationHub{
 	 */
 	@Override
 	public void setLoginInfo(String credentials) {
-		String[] creds =credentials.split(COMMA_SEPARATOR);
+		ProtocolTokenizer creds = new ProtocolTokenizer(credentials, COMMA_SEPARATOR);
 
-		myAdmin = creds[0];
-		myID = creds[1];
+		creds.next();
+		myAdmin = creds.token();
+		creds.next();
+		myID = creds.token();
 	}
 
 	/**
@@ -191,7 +350,7 @@ public class IMPCommunicationHub extends CommunicationHub{
 		myID = "IMP1";
 		serverIP = ipAddress;
 		reconnecter = new Reconnecter(serverIP);
-		new Thread(reconnecter).start();
+		HubThreads.newThread("Reconnecter", reconnecter).start();
 	}
 
 	/**
@@ -201,8 +360,7 @@ public class IMPCommunicationHub extends CommunicationHub{
 	 */
 	@Override
 	public void sendMessage(String message) {
-		writer.println(message);
-		writer.flush(); 
+		connection.send(message);
 
 	}
 
@@ -210,13 +368,16 @@ public class IMPCommunicationHub extends CommunicationHub{
 	 * 
 	 * Reads a message from the server
 	 * 
+	 * Once startListening() has been called every message is pushed to the
+	 * HandlingListener instead, so this only returns messages before then.
+	 * 
 	 * @return Message from the server
 	 * @throws IOException
 	 * 
 	 */
 	@Override
 	public String readMessage() throws IOException{
-		return reader.readLine();
+		return connection.readLine();
 	}
 
 	/**
@@ -229,23 +390,41 @@ public class IMPCommunicationHub extends CommunicationHub{
 	public void gotDisconnected() {
 		closeConnections();  
 		reconnecter = new Reconnecter(serverIP);
-		new Thread(reconnecter).start();
+		HubThreads.newThread("Reconnecter", reconnecter).start();
 	}
 
 	/**
 	 * 
-	 * Cancels the heartbeat timer
+	 * Stops the heartbeat scheduler and the batch timer
 	 * 
 	 */
 	@Override
 	public void closeConnections() {
 		waitingForHeartbeat = false;
-		heartbeatTimer.cancel();
+		if(heartbeatScheduler != null){
+			heartbeatScheduler.shutdown();
+		}
+		if(batchTimer != null){
+			batchTimer.shutdown();
+		}
 	}
 
 
 
 
+	/**
+	 * 
+	 * Stops the threads that deliver to consumers and build them.  The hub
+	 * cannot be used afterwards.
+	 * 
+	 */
+	public void shutdown() {
+		closeConnections();
+		preparationPool.shutdown();
+		deliveryExecutor.shutdown();
+		platformDeliveryPool.shutdown();
+	}
+
 	/**
 	 * 
 	 * Alert the user of something on the visual
@@ -290,12 +469,7 @@ public class IMPCommunicationHub extends CommunicationHub{
 			while (!isConnected && retryCount < 2) {
 				try {               
 					SocketAddress sockaddr = new InetSocketAddress(ip, Integer.parseInt(loginPort));
-					Socket newSocket = new Socket();
-					newSocket.connect(sockaddr, timeout);
-					newSocket.setKeepAlive(true);
-					socket = newSocket;
-					reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-					writer = new PrintWriter(socket.getOutputStream(), false);
+					connection = ChannelTransport.getInstance().connect(sockaddr, timeout);
 					sendMessage(myAdmin+COMMA_SEPARATOR+myID);
 					System.out.println("sent myAdmin and myID to server ");
 					isConnected = true;
@@ -341,13 +515,11 @@ public class IMPCommunicationHub extends CommunicationHub{
 	 * 
 	 */
 	public void startListening() {
-		heartbeatTimer = new Timer();
-		heartbeatTimer.scheduleAtFixedRate(new HeartbeatTask(), 15000, heartbeatSeconds * 1000);
+		heartbeatScheduler = HubThreads.newScheduler("Heartbeat");
+		heartbeatScheduler.scheduleAtFixedRate(new HeartbeatTask(), 15000, heartbeatSeconds * 1000, TimeUnit.MILLISECONDS);
+		batchTimer = HubThreads.newScheduler("Batch linger");
 		//inputManager = new InputManagementThread();
-		//		HandlingRunnable runner = new HandlingRunnable();
-		//		new Thread(runner).run();
-		Thread thread = new Thread(new HandlingRunnable());
-		thread.start();
+		connection.listen(new HandlingListener());
 	}
 
 
@@ -357,315 +529,305 @@ public class IMPCommunicationHub extends CommunicationHub{
 	 * Manages monitoring health of the connection with the server
 	 * 
 	 */
-	private class HeartbeatTask extends TimerTask {
+	private class HeartbeatTask implements Runnable {
+
+		/** The lane statistics last logged, so they are only logged again once they change. */
+		private String lastLaneStatistics = "";
 		
 		/* (non-Javadoc)
-		 * @see java.util.TimerTask#run()
+		 * @see java.lang.Runnable#run()
 		 */
 		public void run() {
+			if (waitingForHeartbeat && heardFromServer) {
+				//the reply is late but the server is still sending; ask again
+				waitingForHeartbeat = false;
+			}
 			if (waitingForHeartbeat) {
-				try {
-					socket.close();
-				} catch (IOException e) {}
+				connection.close();
 				System.out.println("Got Disconnected, at Line 210");
 				gotDisconnected();
 			} else {
+				heardFromServer = false;
 				waitingForHeartbeat = true;
 				System.out.println("sending heartbeat request");
 				sendMessage(STILL_CONNECTED_REQUEST);
+				consumerPool.evictIdle();
+				String laneStatistics = lanes.getStatistics();
+				if(!laneStatistics.equals(lastLaneStatistics)){
+					lastLaneStatistics = laneStatistics;
+					System.out.println("Lanes: "+laneStatistics);
+				}
 			}
 		}
 	}
 	
 	/**
-	 * The Class HandlingRunnable.
+	 * The Class HandlingListener.
 	 * 
-	 * Manages receiving new input from the Server.
+	 * Manages receiving new input from the Server.  Runs on the
+	 * transport's event loop thread, one frame at a time, and only reads
+	 * enough of each frame to hand it to the lane of the group it is for.
 	 * 
 	 */
-	private class HandlingRunnable implements Runnable{
+	private class HandlingListener implements ChannelTransport.FrameListener{
 		
 		/** The Constant HEARTBEAT_RESPONSE. */
 		private static final String HEARTBEAT_RESPONSE = "YesImHere";
 		
-		private String str;
-		
-		private String[] strParts;
-		
-		private boolean run;
-		
-		private String[] emptyStringArray = {""};
-
 		/* (non-Javadoc)
-		 * @see java.lang.Runnable#run()
+		 * @see ChannelTransport.FrameListener#connectionLost()
 		 */
-		public void run(){
-			run = true;
-			while(run){
-				try {
+		public void connectionLost(){
+			gotDisconnected();
+		}
 
-					str = readMessage();
+		/* (non-Javadoc)
+		 * @see ChannelTransport.FrameListener#frameReceived(java.lang.CharSequence)
+		 */
+		public void frameReceived(CharSequence str){
+			heardFromServer = true;
+			lineTokenizer.reset(str, SEMI_COLON_SEPARATOR);
+			lineTokenizer.next();
 
-					if (str==null){
-						gotDisconnected();
-						break;
+			if (lineTokenizer.tokenEquals(HEARTBEAT_RESPONSE) && lineTokenizer.end() == str.length()){
+				receivedHeartBeat();
+			}
+			else if(lineTokenizer.tokenEqualsIgnoreCase("Open") || lineTokenizer.tokenEqualsIgnoreCase("OpenClickPad")){
+				//expecting: Open`/;ID`;/Widgets`/&pluginName`/:typeField1`/,index`/,index`/:typeField2`/,index`/;pluginName2`/:typeField1`/,index`/&groupName`/,groupName2`/:#
+				QuestionDescriptor question = QuestionDescriptor.forQuestion(str.toString());
+				System.out.println("Question is: "+question);
+				acceptedConsumers = question.getConsumers();
+				for(String groupName : question.getGroups().keySet()){
+					lanes.routeControl(OPEN_FRAME, groups.intern(groupName), groupName, question);
+				}
+			} else if(lineTokenizer.tokenEquals("Close")){
+				if(lineTokenizer.next()){
+					fieldTokenizer.resetToField(lineTokenizer, COMMA_SEPARATOR);
+					while(fieldTokenizer.next()){
+						String groupName = fieldTokenizer.token();
+						int group = groups.lookUp(groupName);
+						if(group != SymbolTable.NOT_FOUND){
+							lanes.routeControl(CLOSE_FRAME, group, groupName, null);
+						}
 					}
-
-					else if (str==HEARTBEAT_RESPONSE){
-						receivedHeartBeat();
+				}
+			} else if(str.length()>0){
+				//expecting: clientName`/;group`/;questionID`/;value`/,value
+				//the lane reads the rest; only the group is needed to route it
+				if(lineTokenizer.next()){
+					String clientGroup = lineTokenizer.token();
+					int group = groups.lookUp(clientGroup);
+					if(group != SymbolTable.NOT_FOUND){
+						lanes.route(ANSWER_FRAME, group, clientGroup, null, str);
 					}
-					else{
-						strParts = str.split(SEMI_COLON_SEPARATOR);
-
-						if(strParts[0].equalsIgnoreCase("Open") || strParts[0].equalsIgnoreCase("OpenClickPad")){
-							//expecting: Open`/;ID`;/Widgets`/&pluginName`/:typeField1`/,index`/,index`/:typeField2`/,index`/;pluginName2`/:typeField1`/,index`/&groupName`/,groupName2`/:#
-							System.out.println("Question is: "+str);
-							String[] temp = str.split(AMPERSAND_SEPARATOR); //question&plugin&group
-							//currentQuestion = str;
-							try{
-								acceptedConsumers = temp[1].split(COMMA_SEPARATOR);
-							} catch (ArrayIndexOutOfBoundsException e){
-								acceptedConsumers = emptyStringArray;
-							}
-							for(String groupName : temp[2].split(COMMA_SEPARATOR)){
-								String[] groupNameParts = groupName.split(COLON_SEPARATOR);
-								currentQuestion.put(groupNameParts[0], str);
-								getActivePlugins(acceptedConsumers, groupNameParts[0], currentQuestion.get(groupNameParts[0]));
-								allAnswerArray.put(groupNameParts[0], Collections.synchronizedMap(new HashMap<String, Map<String, String>>() ));
-							}
-						} else if(strParts[0].equals("Close")){
-							for(String groupName : strParts[1].split(COMMA_SEPARATOR)){
-								removePlugins(groupName);
-								removeAnswers(groupName);
-							}
-						} else if(str.length()>0){
-							System.out.println("Received: "+str);//TODO: remove debug printouts
-							if(activeConsumerArray.containsKey(strParts[1])){
-								processNewInput(strParts[0], strParts[1], strParts[3]);
-							}
-						}}
-				} catch(SocketException e){
-					run = false;
-				} catch(Exception e){
-					run = false;
-					e.printStackTrace();
 				}
 			}
 		}
 	}
 
 	/**
-	 * Process new input.
+	 * The Class LaneHandler.
+	 *
+	 * Processes the frames routed to each group's lane.
 	 *
-	 * @param clientName the client name
-	 * @param clientGroup the client group
-	 * @param values the values
 	 */
-	private void processNewInput(String clientName, String clientGroup, String values){
-		//answerArray;	//group identifier, <individual identifier, <label, value> > >
-		Map<String, Map<String, String>> groupAnswerMap = null;//map for a specific group
-		if(!allAnswerArray.containsKey(clientGroup)){
-			groupAnswerMap = Collections.synchronizedMap(new HashMap<String, Map<String, String>>());
-		} else {
-			groupAnswerMap = allAnswerArray.get(clientGroup);
-		}
-		Map<String, String> individualCurrentAnswers = null;//map of answers for a specific individual
-		if(!groupAnswerMap.containsKey(clientName)){
-			individualCurrentAnswers = Collections.synchronizedMap(new HashMap<String, String>());
-		} else {
-			individualCurrentAnswers = groupAnswerMap.get(clientName);
-		}
-		individualCurrentAnswers = calculateAll(clientGroup, values);
-		groupAnswerMap.put(clientName, individualCurrentAnswers);
-		//System.out.println("individualCurrentAnswers: "+individualCurrentAnswers);
-		for (ClickerConsumerInterface cci : activeConsumerArray.get(clientGroup)){
-			String[] dec = cci.declareConsumptions().split(COLON_SEPARATOR);
-			if(dec[1].equalsIgnoreCase("All")){
-				Map<String, Map<String, String>> distributableAnswerAll = new HashMap<String, Map<String, String>>();
-				distributableAnswerAll.put(clientName, individualCurrentAnswers);
-				distributeValues(clientGroup, distributableAnswerAll);
-
-				//TODO: iterate through, add in a No answer category if someone hasn't submitted an answer yet
-			} else if (dec[1].equalsIgnoreCase("Count")){
-				Iterator iteratePerson = groupAnswerMap.keySet().iterator();//  Person name, index#, value
-				String iteratePersonNext = "";
-				Map<String, String> totals = new HashMap<String, String>();
-				//int totalCount = 0;
-				String[] questionParts = currentQuestion.get(clientGroup).split(SEMI_COLON_SEPARATOR);
-				String[] widgets = questionParts[3].split(COMMA_SEPARATOR);
-				for (String widget : widgets){
-					String[] widgetParts = widget.split(COLON_SEPARATOR);
-					if(widgetParts[0].equals("B") || widgetParts[0].equals("TOG")){
-						totals.put(widgetParts[1], "0");
-					} else if (widgetParts[0].equals("COMBO")){
-						//widgetParts[2] = options
-						String[] comboOptions = widgetParts[2].split(TILDE_SEPARATOR);
-						for (String s : comboOptions){
-							totals.put(s, "0");
-						}
-					}
-				}
-				while(iteratePerson.hasNext()){
-					iteratePersonNext = (String) iteratePerson.next();
-					Iterator iterateIndex = groupAnswerMap.get(iteratePersonNext).keySet().iterator();
-					String iterateIndexNext = "";
-					while (iterateIndex.hasNext()){
-						iterateIndexNext = (String) iterateIndex.next();
-						String nextValue = groupAnswerMap.get(iteratePersonNext).get(iterateIndexNext);
-						if(!nextValue.equals(" ")){
-							if(totals.containsKey(nextValue)){
-								totals.put(nextValue, ""+(Integer.parseInt(totals.get(nextValue)) + 1));
-							} else {
-								totals.put(nextValue, "1");
-							}
-						}
-					}
-				}
-				Map<String, Map<String, String>> answersToInsert = new HashMap<String, Map<String, String>>();
-				answersToInsert.put("Count", totals);
-				countAnswerArray.put(clientGroup, answersToInsert);
-				distributeValues(clientGroup, answersToInsert);
-			} else if (dec[1].equalsIgnoreCase("Avg")){
-				int widgetCount = Integer.parseInt(dec[2]);
-				//individualCurrentAnswers      single persons      index : value
-				//groupAnswerMap			person     :     index   : value
-				Map<String, Integer> averagePersonCounts = new HashMap<String, Integer>();
-				Iterator iteratePerson = groupAnswerMap.keySet().iterator();
-				String personNext = "";
-				Map<String, Integer> totalsToAverage = new HashMap<String, Integer>();
-				Map<String, String> person = null;
-				while (iteratePerson.hasNext()){
-					personNext = (String) iteratePerson.next();
-					person = groupAnswerMap.get(personNext);
-					Iterator indexIterator = person.keySet().iterator();
-					String indexNext = "";
-					while(indexIterator.hasNext()){
-						indexNext = (String) indexIterator.next();
-						Integer value = 0;
-						try{
-							value = Integer.parseInt(person.get(indexNext));
-							if(averagePersonCounts.containsKey(indexNext)){
-								averagePersonCounts.put(indexNext, averagePersonCounts.get(indexNext) + 1);
-							} else {
-								averagePersonCounts.put(indexNext, 1);
-							}
-						} catch (Exception e) {
-							System.out.println("integer.parseint exception");
-							e.printStackTrace();
-						}
-						if(totalsToAverage.containsKey(indexNext)){
-							totalsToAverage.put(indexNext, totalsToAverage.get(indexNext) + value);
-						} else {
-							totalsToAverage.put(indexNext, value);
-						}
+	private class LaneHandler implements ProcessingLanes.FrameHandler {
+
+		/* (non-Javadoc)
+		 * @see ProcessingLanes.FrameHandler#frameRouted(FrameRing.Slot)
+		 */
+		public void frameRouted(FrameRing.Slot slot){
+			switch(slot.getKind()){
+			case OPEN_FRAME:
+				openGroup(slot.getGroup(), slot.getName(), (QuestionDescriptor) slot.getAttachment());
+				break;
+			case CLOSE_FRAME:
+				closeGroup(slot.getGroup(), slot.getName());
+				break;
+			case ANSWER_FRAME:
+				//clientName`/;group`/;questionID`/;value`/,value
+				ProtocolTokenizer answer = answerTokenizers.get(lanes.laneOf(slot.getGroup()));
+				answer.reset(slot.getFrame(), SEMI_COLON_SEPARATOR);
+				if(answer.next()){
+					String clientName = answer.token();
+					if(answer.next() && answer.next() && answer.next()){
+						processNewInput(clientName, slot.getGroup(), slot.getName(), answer.token());
 					}
 				}
-				Map<String, Map<String, String>> answersToInsert = new HashMap<String, Map<String, String>>();
-				Iterator totalsIterator = totalsToAverage.keySet().iterator();
-				String index = "";
-				while(totalsIterator.hasNext()){
-					index = (String) totalsIterator.next();
-					float averageValue = (float)totalsToAverage.get(index) / (float)averagePersonCounts.get(index) ; 
-					Map<String, String> answerMapToInsert = new HashMap<String, String>();
-					answerMapToInsert.put("Average", ""+averageValue);
-					answersToInsert.put(index, answerMapToInsert );
-				}
-				averageAnswerArray.put(clientGroup, answersToInsert);
-				distributeValues(clientGroup, answersToInsert);
-				//split dec, see if the beginning is average, if it is, then get the count
-				//should be Avg,#
-			} else {
-				System.out.println("Error, unspecified means of answer distribution to "+cci.declareConsumptions());
+				break;
 			}
 		}
 	}
 
 	/**
-	 * Distribute values.
+	 * Gets a group's state, making it the first time the group is seen.  Runs
+	 * on the group's lane, which is the only thread that touches it.
 	 *
-	 * @param group the group
-	 * @param answerMapToDistribute the answer map to distribute
-	 */
-	private void distributeValues(String group, Map<String, Map<String, String>> answerMapToDistribute){
-		//  Person name, index#, value
-		//Map<String, ArrayList<ClickerConsumerInterface>> activeConsumerArray;//group identifier, specific widget instance
-		System.out.println("output: "+answerMapToDistribute);
-		if(activeConsumerArray.containsKey(group)){
-			ArrayList<ClickerConsumerInterface> activeConsumers =activeConsumerArray.get(group);
-			for(ClickerConsumerInterface cc : activeConsumers){
-				Thread thread = new Thread(new MessagePassingRunnable(cc, answerMapToDistribute));
-				thread.start();
-			}
+	 * @param group the group's id
+	 * @return the state
+	 */
+	private GroupState stateOf(int group){
+		IntTable<GroupState> states = laneStates.get(lanes.laneOf(group));
+		GroupState state = states.get(group);
+		if(state == null){
+			state = new GroupState();
+			states.put(group, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Starts a group's question: from the next answer routed to the group on,
+	 * answers are accepted and aggregated, while its consumers are built
+	 * elsewhere and join when ready.  Runs on the group's lane.
+	 *
+	 * @param group the group's id
+	 * @param groupName the group name
+	 * @param question the question
+	 */
+	private void openGroup(int group, String groupName, QuestionDescriptor question){
+		GroupState state = stateOf(group);
+		state.openToken = new Object();
+		state.question = question;
+		if(state.mailboxes == null){
+			state.mailboxes = new ArrayList<ConsumerMailbox>();
 		}
+		state.answers = new GroupAnswers(question, groupName);
+		state.counts = new CountAggregator(question);
+		state.averages = new AverageAggregator(question.getWidgetCount());
+		model.publish(groupName, question.getQuestionID(), state.counts.getSnapshot(), state.averages.getSnapshot(), 0);
+		prepareConsumers(question.getConsumers(), group, groupName, question, state.openToken);
 	}
 
 	/**
-	 * The Class MessagePassingRunnable.
+	 * Ends a group's question.  Runs on the group's lane.
+	 *
+	 * @param group the group's id
+	 * @param groupName the group name
 	 */
-	private class MessagePassingRunnable implements Runnable {
-		
-		/** The consumer. */
-		private ClickerConsumerInterface consumer;
-		
-		/** The input map. */
-		private Map<String, Map<String, String>> inputMap;
-		
-		/**
-		 * Instantiates a new message passing runnable.
-		 *
-		 * @param cci the cci
-		 * @param input the input
-		 */
-		public MessagePassingRunnable(ClickerConsumerInterface cci, Map<String, Map<String, String>> input){
-			consumer = cci;
-			inputMap = input;
+	private void closeGroup(int group, String groupName){
+		GroupState state = stateOf(group);
+		state.openToken = null;
+		removePlugins(state, groupName);
+		removeAnswers(state);
+		model.retire(groupName);
+	}
+
+	/**
+	 * Process new input.  Runs on the group's lane.
+	 *
+	 * @param clientName the client name
+	 * @param group the client group's id
+	 * @param clientGroup the client group
+	 * @param values the values
+	 */
+	private void processNewInput(String clientName, int group, String clientGroup, String values){
+		GroupState state = stateOf(group);
+		GroupAnswers groupAnswers = state.answers;//answers for a specific group
+		if(groupAnswers == null || state.mailboxes == null){
+			return;
+		}
+		String[] individualCurrentAnswers = calculateAll(values);//answers of a specific individual, by widget index
+		String[] previousAnswers = groupAnswers.put(clientName, individualCurrentAnswers);//what this individual had answered before, if anything
+		state.counts.apply(previousAnswers, individualCurrentAnswers);
+		state.averages.apply(previousAnswers, individualCurrentAnswers);
+		//consumers get the same immutable results everyone else reads from the model
+		GroupResults results = model.publish(clientGroup, state.question.getQuestionID(), state.counts.getSnapshot(), state.averages.getSnapshot(), groupAnswers.getParticipantCount());
+		//each formatting is calculated once and only handed to the consumers that asked for it
+		Map<String, ArrayList<ConsumerMailbox>> subscriptions = state.subscriptions;
+		if(subscriptions == null){
+			return;
 		}
+		ArrayList<ConsumerMailbox> subscribers = subscriptions.get(ALL_FORMATTING);
+		if(subscribers != null){
+			distributeValues(subscribers, new AnswerRecord(clientGroup, clientName, previousAnswers, individualCurrentAnswers));
 
-		/* (non-Javadoc)
-		 * @see java.lang.Runnable#run()
-		 */
-		@Override
-		public void run() {
-			consumer.inputData(inputMap);
+			//TODO: iterate through, add in a No answer category if someone hasn't submitted an answer yet
+		}
+		subscribers = subscriptions.get(COUNT_FORMATTING);
+		if(subscribers != null){
+			distributeValues(subscribers, results.getCounts());
+		}
+		subscribers = subscriptions.get(AVERAGE_FORMATTING);
+		if(subscribers != null){
+			distributeValues(subscribers, results.getAverages());
+		}
+	}
+
+	/**
+	 * Distribute values.
+	 *
+	 * @param subscribers the consumers that asked for this formatting
+	 * @param delivery the answers to distribute
+	 */
+	private void distributeValues(ArrayList<ConsumerMailbox> subscribers, ConsumerDelivery delivery){
+		for(ConsumerMailbox mailbox : subscribers){
+			mailbox.post(delivery);
 		}
 	}
 
 	/**
 	 * Removes the plugins.
 	 *
+	 * @param state the group's state
 	 * @param string the string
 	 */
-	private void removePlugins(String string) {
+	private void removePlugins(GroupState state, String string) {
 		System.out.println("Close called on: "+string);
-		ArrayList<ClickerConsumerInterface> cciArray = activeConsumerArray.get(string);
-		for(ClickerConsumerInterface cci : cciArray){
-			cci.setActiveStatus(false);
+		ArrayList<ConsumerMailbox> mailboxes = state.mailboxes;
+		state.mailboxes = null;
+		if(mailboxes != null){
+			for(ConsumerMailbox mailbox : mailboxes){
+				retireMailbox(string, mailbox);
+			}
 		}
-		activeConsumerArray.put(string, null);
-		activeConsumerArray.remove(string);	
+		state.subscriptions = null;
 	}
 
 	/**
-	 * Removes the answers.
+	 * Closes a consumer's mailbox: whatever is still waiting is delivered, then
+	 * the consumer is kept for the next question or deactivated.  Consumers
+	 * from a retired plugin jar are never kept, so the jar can be unloaded.
 	 *
-	 * @param groupName the group name
+	 * @param groupName the group the consumer served
+	 * @param mailbox the mailbox
 	 */
-	private void removeAnswers(String groupName){
-		allAnswerArray.put(groupName, null);
-		allAnswerArray.remove(groupName);
+	private void retireMailbox(final String groupName, final ConsumerMailbox mailbox){
+		final ClickerConsumerInterface cci = mailbox.getConsumer();
+		mailbox.close(new Runnable(){
+			public void run(){
+				PluginJar jar = jarsByLoader.get(cci.getClass().getClassLoader());
+				if((jar != null && jar.isRetired()) || !consumerPool.release(groupName, cci)){
+					cci.setActiveStatus(false);
+					releasePluginInstance(cci);
+				}
+				System.out.println("Delivery to "+groupName+": "+mailbox.getStatistics());
+			}
+		});
+	}
 
+	/**
+	 * Removes the answers.
+	 *
+	 * @param state the group's state
+	 */
+	private void removeAnswers(GroupState state){
+		state.answers = null;
+		state.counts = null;
+		state.averages = null;
 	}
 
 	/**
 	 * Load consumers from subdirectory.
 	 */
 	private void loadConsumersFromSubdirectory(){
-		availableConsumers = Collections.synchronizedMap(new HashMap<String, Class<? extends ClickerConsumerInterface>>());
-		activeConsumerArray = Collections.synchronizedMap(new HashMap<String, ArrayList<ClickerConsumerInterface>>());
-		allAnswerArray = Collections.synchronizedMap(new HashMap<String, Map<String, Map<String, String>>>() );
-		countAnswerArray = Collections.synchronizedMap(new HashMap<String, Map<String, Map<String, String>>>() );
-		averageAnswerArray = Collections.synchronizedMap(new HashMap<String, Map<String, Map<String, String>>>() );
-		File consumerDirectory = new File("./consumers/");
+		availableConsumers = Collections.synchronizedMap(new HashMap<String, ConsumerFactory>());
+		consumerDeclarations = Collections.synchronizedMap(new HashMap<String, ConsumptionDeclaration>());
+		groups = new SymbolTable();
+		model = IMPModel.getInstance();
+		pluginJars = Collections.synchronizedMap(new HashMap<String, PluginJar>());
+		jarsByLoader = Collections.synchronizedMap(new HashMap<ClassLoader, PluginJar>());
+		consumerDirectory = new File("./consumers/");
 		String[] files = consumerDirectory.list();
 		URLClassLoader urlcl = null;
 		try {
@@ -675,33 +837,217 @@ public class IMPCommunicationHub extends CommunicationHub{
 		}
 		//ClickerConsumerInterface cca = new ClickerConsumerAdapter();
 		System.out.println(files);
+		pluginIndex = new PluginIndex(new File(consumerDirectory.getParentFile(), PLUGIN_INDEX_FILE));
+		pluginIndex.retain(Arrays.asList(files));
 		for(String s: files){
+			File file = new File(consumerDirectory, s);
+			if(s.endsWith(".jar")){
+				loadPluginJar(file);
+				continue;
+			}
+			PluginIndex.Entry entry = pluginIndex.lookUp(file);
+			if(entry != null){
+				//unchanged since it was last checked
+				if(entry.isConsumer()){
+					try {
+						consumerClass = (Class<? extends ClickerConsumerInterface>) urlcl.loadClass(entry.getClassName());
+						ConsumerFactory factory = ConsumerFactory.forClass(consumerClass);
+						if(factory != null){
+							ConsumptionDeclaration declaration = new ConsumptionDeclaration(entry.getDeclaration());
+							consumerDeclarations.put(declaration.getKey(), declaration);
+							availableConsumers.put(declaration.getKey(), factory);
+						}
+					} catch (ClassNotFoundException e) {
+						System.out.println(s + " is in the plugin index but could not be loaded. Skipping.");
+					} catch (NoClassDefFoundError e) {
+						System.out.println(s + " is in the plugin index but could not be loaded. Skipping.");
+					}
+				}
+				continue;
+			}
+			String className = null;
+			String consumption = null;
 			try {
 				if(s.length() < 6){
 					System.out.println("Filename: "+ s + "is too short to be an appropriate java class file. Skipping.");
 					continue;
 				}
 				consumerClass = (Class<? extends ClickerConsumerInterface>) urlcl.loadClass(s.substring(0,s.length()-6));
-				boolean works = ClickerConsumerInterface.class.isAssignableFrom(consumerClass);
-				if(works){
-					consumerInstance = (ClickerConsumerInterface)consumerClass.newInstance();
-					String temporaryConsumption = consumerInstance.declareConsumptions();
-					String[] temporaryConsumptionArray = temporaryConsumption.split(",");
-					availableConsumers.put(temporaryConsumptionArray[0], consumerClass);
+				boolean works = ClickerConsumerInterface.class.isAssignableFrom(consumerClass) && !Modifier.isAbstract(consumerClass.getModifiers());
+				ConsumerFactory factory = works ? ConsumerFactory.forClass(consumerClass) : null;
+				if(factory != null){
+					ConsumptionDeclaration declaration = declareConsumer(factory);
+					consumerDeclarations.put(declaration.getKey(), declaration);
+					availableConsumers.put(declaration.getKey(), factory);
+					className = consumerClass.getName();
+					consumption = declaration.getRaw();
 				} else {
 					System.out.println(s + " does not properly fit the necessary interface. Skipping.");
 				}
 			} catch (ClassNotFoundException e) {
 				System.out.println(s + " was not an appropriately formed java class file. Skipping.");
+			} catch (RuntimeException e) {
+				System.out.println(s + " could not be constructed to ask for its consumption: " + e + ". Skipping.");
 				continue;
-			} catch (InstantiationException e) {
-				e.printStackTrace();
-			} catch (IllegalAccessException e) {
-				e.printStackTrace();
 			} catch (NoClassDefFoundError e) {
 				System.out.println("Invalid class file " + s + " found. Skipping.");
-				continue;
 			}
+			pluginIndex.record(file, className, consumption);
+		}
+		pluginIndex.save();
+		try {
+			pluginWatcher = new PluginWatcher(consumerDirectory.toPath(), new PluginWatcher.ChangeListener(){
+				public void pluginsChanged(){
+					applyPluginChanges();
+				}
+			});
+			Thread watcherThread = HubThreads.newThread("PluginWatcher", pluginWatcher);
+			watcherThread.setDaemon(true);
+			watcherThread.start();
+		} catch (IOException e) {
+			System.out.println("Could not watch "+consumerDirectory+" for plugin jars; replacing one will need a restart.");
+		}
+	}
+
+	/**
+	 * Gets what a consumer class declares.  Only consumers that do not publish
+	 * their declaration are constructed; the rest wait for a question.
+	 *
+	 * @param factory the factory for the consumer class
+	 * @return the declaration
+	 */
+	private ConsumptionDeclaration declareConsumer(ConsumerFactory factory){
+		ConsumptionDeclaration declaration = ConsumptionDeclaration.forClass(factory.getConsumerClass());
+		if(declaration == null){
+			System.out.println(factory.getConsumerClass().getName() + " has no "+ConsumptionDeclaration.DECLARATION_FIELD+", constructing it to ask for its consumption.");
+			consumerInstance = factory.newConsumer();
+			declaration = new ConsumptionDeclaration(consumerInstance.declareConsumptions());
+		}
+		return declaration;
+	}
+
+	/**
+	 * Loads a plugin jar in a class loader of its own and makes its consumer available.
+	 *
+	 * @param file the jar file
+	 */
+	private void loadPluginJar(File file){
+		PluginIndex.Entry entry = pluginIndex.lookUp(file);
+		if(entry != null && !entry.isConsumer()){
+			return;
+		}
+		PluginJar jar = null;
+		try {
+			jar = new PluginJar(file, IMPCommunicationHub.class.getClassLoader());
+			ConsumptionDeclaration declaration;
+			ConsumerFactory factory;
+			if(entry != null){
+				factory = ConsumerFactory.forClass(jar.loadConsumer(entry.getClassName()));
+				if(factory == null){
+					return;
+				}
+				declaration = new ConsumptionDeclaration(entry.getDeclaration());
+			} else {
+				factory = jar.findConsumer() == null ? null : ConsumerFactory.forClass(jar.getConsumerClass());
+				if(factory == null){
+					System.out.println(file.getName() + " has no consumer that fits the necessary interface. Skipping.");
+					pluginIndex.record(file, null, null);
+					return;
+				}
+				declaration = declareConsumer(factory);
+				pluginIndex.record(file, factory.getConsumerClass().getName(), declaration.getRaw());
+			}
+			consumerDeclarations.put(declaration.getKey(), declaration);
+			availableConsumers.put(declaration.getKey(), factory);
+			pluginJars.put(file.getName(), jar);
+			jarsByLoader.put(jar.getLoader(), jar);
+			System.out.println("Loaded "+file.getName()+" as "+declaration.getKey());
+			jar = null;
+		} catch (IOException e) {
+			System.out.println(file.getName() + " could not be read. Skipping.");
+		} catch (ClassNotFoundException e) {
+			System.out.println(file.getName() + " is in the plugin index but could not be loaded. Skipping.");
+		} catch (RuntimeException e) {
+			System.out.println(file.getName() + " could not be constructed to ask for its consumption: " + e + ". Skipping.");
+		} catch (LinkageError e) {
+			System.out.println("Invalid plugin jar " + file.getName() + " found. Skipping.");
+		} finally {
+			if(jar != null){
+				jar.retire();
+			}
+		}
+	}
+
+	/**
+	 * Swaps in the plugin jars that were added, replaced or deleted.  Runs on
+	 * the plugin watcher's thread, so scanning and loading jars never holds up
+	 * the frames from the server.  Consumers already running keep their old
+	 * classes until their question closes; the next question builds from the
+	 * new ones.  If the set of consumers changed, the server is told the new
+	 * consumption string.
+	 */
+	private void applyPluginChanges(){
+		if(pluginWatcher == null || !pluginWatcher.hasChanges()){
+			return;
+		}
+		Set<String> keysBefore;
+		synchronized(availableConsumers){
+			keysBefore = new HashSet<String>(availableConsumers.keySet());
+		}
+		for(String name : pluginWatcher.takeChanges()){
+			PluginJar old = pluginJars.remove(name);
+			if(old != null){
+				synchronized(availableConsumers){
+					Iterator<Map.Entry<String, ConsumerFactory>> i = availableConsumers.entrySet().iterator();
+					while(i.hasNext()){
+						Map.Entry<String, ConsumerFactory> available = i.next();
+						if(available.getValue().getConsumerClass() == old.getConsumerClass()){
+							consumerDeclarations.remove(available.getKey());
+							i.remove();
+						}
+					}
+				}
+				consumerPool.evict(old.getConsumerClass());
+				if(old.retire()){
+					jarsByLoader.remove(old.getLoader());
+				}
+			}
+			File file = new File(consumerDirectory, name);
+			if(file.isFile()){
+				loadPluginJar(file);
+			} else {
+				System.out.println(name + " was removed.");
+			}
+		}
+		String[] files = consumerDirectory.list();
+		if(files != null){
+			pluginIndex.retain(Arrays.asList(files));
+		}
+		pluginIndex.save();
+		if(!keysBefore.equals(availableConsumers.keySet()) && connection != null){
+			sendMessage(getConsumptionString());
+		}
+	}
+
+	/**
+	 * Counts a consumer instance closed, so a retired plugin jar can be unloaded
+	 * once nothing uses it.
+	 *
+	 * @param cci the consumer
+	 */
+	private void releasePluginInstance(ClickerConsumerInterface cci){
+		ClassLoader loader = cci.getClass().getClassLoader();
+		releasePluginInstance(jarsByLoader.get(loader));
+	}
+
+	/**
+	 * Counts an instance of a plugin jar closed, or never made.
+	 *
+	 * @param jar the jar, may be null for a consumer that is not from one
+	 */
+	private void releasePluginInstance(PluginJar jar){
+		if(jar != null && jar.instanceClosed()){
+			jarsByLoader.remove(jar.getLoader());
 		}
 	}
 
@@ -733,35 +1079,167 @@ public class IMPCommunicationHub extends CommunicationHub{
 	}
 
 	/**
-	 * Gets the active plugins.
+	 * Builds and starts the consumers a question asks for, on the preparation
+	 * pool so the group's lane is not held up by frames and sockets.  Each
+	 * consumer joins its group back on the group's lane once it is ready.
 	 *
-	 * @param consumerArray the consumer array
+	 * @param consumerArray the consumers the question asks for
+	 * @param group the group's id
 	 * @param groupName the group name
 	 * @param question the question
-	 * @return the active plugins
-	 */
-	private void getActivePlugins(String[] consumerArray, String groupName, String question){
-		for (String s : consumerArray){
-			String[] pluginInformation = s.split(COMMA_SEPARATOR);
-			if(availableConsumers.containsKey(s)){
-				ClickerConsumerInterface cci = null;
-				try {
-					cci = (ClickerConsumerInterface) availableConsumers.get(pluginInformation[0]).newInstance();
-					cci.setID(groupName);
-					cci.setQuestion(question);
-					cci.setActiveStatus(true);
-				} catch (InstantiationException e) {
-					e.printStackTrace();
-				} catch (IllegalAccessException e) {
-					e.printStackTrace();
+	 * @param openToken identifies this Open of the group
+	 */
+	private void prepareConsumers(List<String> consumerArray, final int group, final String groupName, final QuestionDescriptor question, final Object openToken){
+		for (final String s : consumerArray){
+			final ConsumerFactory factory;
+			final ConsumptionDeclaration declaration;
+			final PluginJar jar;
+			//the instance is counted against its jar while the jar is still available, so it cannot be unloaded before it is built
+			synchronized(availableConsumers){
+				factory = availableConsumers.get(s);
+				declaration = consumerDeclarations.get(s);
+				if(factory == null || declaration == null){
+					continue;
 				}
-				if(activeConsumerArray.containsKey(groupName)){
-					activeConsumerArray.get(groupName).add(cci);
-				} else {
-					ArrayList<ClickerConsumerInterface> cciArray = new ArrayList<ClickerConsumerInterface>();
-					cciArray.add(cci);
-					activeConsumerArray.put(groupName, cciArray);
+				jar = jarsByLoader.get(factory.getConsumerClass().getClassLoader());
+				if(jar != null && !jar.instanceCreated()){
+					continue;
+				}
+			}
+			final String formatting = formattingOf(declaration, factory.getConsumerClass());
+			preparationPool.execute(new Runnable(){
+				public void run(){
+					ClickerConsumerInterface cci = consumerPool.acquire(factory.getConsumerClass(), groupName);
+					if(cci != null){
+						//a pooled instance was counted when it was built
+						releasePluginInstance(jar);
+					} else {
+						try {
+							cci = factory.newConsumer();
+						} catch (RuntimeException e) {
+							System.out.println("Could not construct "+s+" for "+groupName+": "+e);
+							releasePluginInstance(jar);
+							return;
+						} catch (LinkageError e) {
+							System.out.println("Could not construct "+s+" for "+groupName+": "+e);
+							releasePluginInstance(jar);
+							return;
+						}
+					}
+					try {
+						cci.setID(groupName);
+						cci.setQuestion(question.getRaw());
+						cci.setActiveStatus(true);
+					} catch (RuntimeException e) {
+						System.out.println("Could not start "+s+" for "+groupName+": "+e);
+					} catch (LinkageError e) {
+						System.out.println("Could not start "+s+" for "+groupName+": "+e);
+					}
+					//Count and Avg consumers only show the latest snapshot, so older ones can be skipped
+					boolean snapshotConsumer = COUNT_FORMATTING.equals(formatting) || AVERAGE_FORMATTING.equals(formatting);
+					Executor executor = HubThreads.needsPlatformThread(cci) ? platformDeliveryPool : deliveryExecutor;
+					final ConsumerMailbox mailbox = new ConsumerMailbox(cci, executor, mailboxCapacity, snapshotConsumer, overflowPolicy, deliveryDeadlineMillis);
+					mailbox.setBatching(batchTimer, maxBatchSize, batchLingerMillis);
+					lanes.execute(group, new Runnable(){
+						public void run(){
+							addConsumer(s, formatting, group, groupName, openToken, mailbox);
+						}
+					});
 				}
+			});
+		}
+	}
+
+	/**
+	 * Gets how a consumer wants its answers.  A consumer that declares no
+	 * formatting but takes answers one at a time, as an AnswerChangeListener
+	 * or a BatchConsumer, gets All, so its key can stay the plain name the
+	 * server already knows it by.
+	 *
+	 * @param declaration the consumer's declaration
+	 * @param consumerClass the consumer class
+	 * @return the formatting, or null if there is none
+	 */
+	private String formattingOf(ConsumptionDeclaration declaration, Class<?> consumerClass){
+		String formatting = declaration.getFormatting();
+		if(formatting == null && (AnswerChangeListener.class.isAssignableFrom(consumerClass) || BatchConsumer.class.isAssignableFrom(consumerClass))){
+			formatting = ALL_FORMATTING;
+		}
+		return formatting;
+	}
+
+	/**
+	 * Adds a prepared consumer to its group and hands it what has been answered
+	 * so far.  Runs on the group's lane, between answers, so the consumer sees
+	 * every answer exactly once: those before now in the catch-up, which no
+	 * mailbox limit drops, and every later one as it arrives, subject to the
+	 * mailbox's overflow policy like any other delivery.  If the group's question closed while the
+	 * consumer was being prepared, it is retired straight away.
+	 *
+	 * @param s the consumer key
+	 * @param formatting how the consumer wants answers, or null
+	 * @param group the group's id
+	 * @param groupName the group name
+	 * @param openToken the Open the consumer was prepared for
+	 * @param mailbox the consumer's mailbox
+	 */
+	private void addConsumer(String s, String formatting, int group, String groupName, Object openToken, ConsumerMailbox mailbox){
+		GroupState state = stateOf(group);
+		if(state.openToken != openToken){
+			retireMailbox(groupName, mailbox);
+			return;
+		}
+		if(state.mailboxes == null){
+			state.mailboxes = new ArrayList<ConsumerMailbox>();
+		}
+		state.mailboxes.add(mailbox);
+		if(formatting == null){
+			System.out.println("Error, unspecified means of answer distribution to "+s);
+			return;
+		}
+		Map<String, ArrayList<ConsumerMailbox>> subscriptions = state.subscriptions;
+		if(subscriptions == null){
+			subscriptions = new HashMap<String, ArrayList<ConsumerMailbox>>();
+			state.subscriptions = subscriptions;
+		}
+		ArrayList<ConsumerMailbox> subscribers = subscriptions.get(formatting);
+		if(subscribers == null){
+			subscribers = new ArrayList<ConsumerMailbox>();
+			subscriptions.put(formatting, subscribers);
+		}
+		subscribers.add(mailbox);
+		catchUp(formatting, state, groupName, mailbox);
+	}
+
+	/**
+	 * Hands a consumer that joined late what its group has answered so far.
+	 *
+	 * @param formatting how the consumer wants answers
+	 * @param state the group's state
+	 * @param groupName the group name
+	 * @param mailbox the consumer's mailbox
+	 */
+	private void catchUp(String formatting, GroupState state, String groupName, ConsumerMailbox mailbox){
+		if(ALL_FORMATTING.equals(formatting)){
+			GroupAnswers groupAnswers = state.answers;
+			if(groupAnswers == null){
+				return;
+			}
+			List<ConsumerDelivery> answered = new ArrayList<ConsumerDelivery>();
+			for(int participant = 0; participant < groupAnswers.getParticipantCount(); participant++){
+				answered.add(new AnswerRecord(groupName, groupAnswers.getParticipant(participant), groupAnswers.getAnswers(participant)));
+			}
+			//a room larger than the mailbox would lose most of its catch-up to the overflow policy
+			mailbox.preload(answered);
+		} else if(COUNT_FORMATTING.equals(formatting)){
+			GroupResults results = model.getResults(groupName);
+			if(results != null){
+				mailbox.post(results.getCounts());
+			}
+		} else if(AVERAGE_FORMATTING.equals(formatting)){
+			GroupResults results = model.getResults(groupName);
+			if(results != null){
+				mailbox.post(results.getAverages());
 			}
 		}
 	}
@@ -769,15 +1247,19 @@ public class IMPCommunicationHub extends CommunicationHub{
 	/**
 	 * Calculate all.
 	 *
-	 * @param group the group
 	 * @param input the input
-	 * @return the map
+	 * @return the answers, by widget index
 	 */
-	private Map<String, String> calculateAll(String group, String input){
-		String[] splitAnswers = input.split(COMMA_SEPARATOR);
-		Map<String, String> answersToReturn = Collections.synchronizedMap(new HashMap<String, String>());
-		for (int i = 0; i<splitAnswers.length; i++){
-			answersToReturn.put(""+i, splitAnswers[i]);
+	private String[] calculateAll(String input){
+		ProtocolTokenizer partTokenizer = new ProtocolTokenizer(input, COMMA_SEPARATOR);
+		int widgets = 0;
+		while(partTokenizer.next()){
+			widgets++;
+		}
+		String[] answersToReturn = new String[widgets];
+		partTokenizer.reset(input, COMMA_SEPARATOR);
+		for (int i = 0; partTokenizer.next(); i++){
+			answersToReturn[i] = partTokenizer.token();
 		}
 		return answersToReturn;
 	}
@@ -792,7 +1274,7 @@ public class IMPCommunicationHub extends CommunicationHub{
 		Iterator<String> i = consumers.keySet().iterator();
 		Boolean next;
 		String key;
-		Class<? extends ClickerConsumerInterface> consumer;
+		ConsumerFactory consumer;
 		while (i.hasNext()){
 			key = i.next();
 			next = consumers.get(key);
@@ -842,5 +1324,35 @@ public class IMPCommunicationHub extends CommunicationHub{
 		System.out.println(consumers==null);
 		return consumers;
 	}
-}
 
+	/**
+	 * The Class GroupState.
+	 *
+	 * Everything the hub keeps for one group.  Only ever touched on the
+	 * group's lane, so it takes no locks.
+	 *
+	 */
+	private static class GroupState {
+
+		/** The group's current or last question. */
+		private QuestionDescriptor question;
+
+		/** Identifies the group's latest Open, so consumers prepared for an earlier one are not added; null once closed. */
+		private Object openToken;
+
+		/** The coded answers of every participant, by widget index; null once closed. */
+		private GroupAnswers answers;
+
+		/** The running Count totals; null once closed. */
+		private CountAggregator counts;
+
+		/** The running Avg sums; null once closed. */
+		private AverageAggregator averages;
+
+		/** The mailbox of each active consumer; null once closed. */
+		private ArrayList<ConsumerMailbox> mailboxes;
+
+		/** The active consumers, by the formatting they declared. */
+		private Map<String, ArrayList<ConsumerMailbox>> subscriptions;
+	}
+}
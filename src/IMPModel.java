@@ -1,18 +1,41 @@
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 // TODO: Auto-generated Javadoc
 /**
  * The Class IMPModel.
+ *
+ * The published results of every group with a question open.  The hub
+ * publishes a new, immutable GroupResults each time a group's answers change,
+ * replacing the group's entry and nothing else, so publishing one group
+ * neither copies nor waits for the others.  A group is only ever published
+ * from its own lane, one answer at a time.  Consumers, the visual and
+ * exporters read it without locking and can tell whether a group's results
+ * changed by comparing versions.
+ *
+ * A group's results are removed when its question closes, once its consumers
+ * have been handed the final ones.  Its versions carry on from where they
+ * were if it is opened again.
  */
 public class IMPModel {
 
 	/** The _instance. */
 	private static IMPModel _instance;
+
+	/** The latest results, by group. */
+	private final Map<String, GroupResults> results;
+
+	/** The last version of each group that was removed, so its versions keep rising if it is opened again. */
+	private final Map<String, Long> retiredVersions;
 	
 	/**
 	 * Instantiates a new iMP model.
 	 */
 	private IMPModel(){
-		
+		results = new ConcurrentHashMap<String, GroupResults>();
+		retiredVersions = new ConcurrentHashMap<String, Long>();
 	}
 	
     /**
@@ -26,5 +49,63 @@ public class IMPModel {
         }
         return _instance;
     }
+
+	/**
+	 * Gets every group's results as they are now.  Each group's results are
+	 * consistent in themselves; groups published while the copy is made may
+	 * show either their old or their new results.
+	 *
+	 * @return the snapshot
+	 */
+	public ModelSnapshot getSnapshot(){
+		return new ModelSnapshot(new HashMap<String, GroupResults>(results));
+	}
+
+	/**
+	 * Gets a group's latest results.
+	 *
+	 * @param group the group
+	 * @return the results, or null if none were published
+	 */
+	public GroupResults getResults(String group){
+		return results.get(group);
+	}
+
+	/**
+	 * Publishes a group's new results.  Only the group's lane may call this.
+	 *
+	 * @param group the group
+	 * @param questionID the question's ID
+	 * @param counts the counts
+	 * @param averages the averages
+	 * @param answered how many participants have answered
+	 * @return the published results
+	 */
+	public GroupResults publish(String group, String questionID, CountSnapshot counts, AverageSnapshot averages, int answered){
+		GroupResults previous = results.get(group);
+		long version;
+		if(previous != null){
+			version = previous.getVersion();
+		} else {
+			Long retired = retiredVersions.get(group);
+			version = retired == null ? 0 : retired.longValue();
+		}
+		GroupResults published = new GroupResults(group, questionID, version + 1, counts, averages, answered);
+		results.put(group, published);
+		return published;
+	}
+
+	/**
+	 * Removes a group's results once its question has closed.  Only the
+	 * group's lane may call this.
+	 *
+	 * @param group the group
+	 */
+	public void retire(String group){
+		GroupResults last = results.remove(group);
+		if(last != null){
+			retiredVersions.put(group, Long.valueOf(last.getVersion()));
+		}
+	}
 	
 }
@@ -0,0 +1,98 @@
+
+/**
+ * The Class IntTable.
+ *
+ * Property of University of Northern Iowa
+ *
+ * A map from the dense ids of a SymbolTable to values, kept in an array
+ * indexed by id, so a lookup neither hashes nor boxes.
+ *
+ * Not thread safe, and takes no locks: keep each table to one thread, as
+ * the hub does with one table of group state per processing lane.
+ *
+ * @param <V> the value type
+ */
+public class IntTable<V> {
+
+	/** The values, by id; null where there is none. */
+	private Object[] values;
+
+	/** How many ids have a value. */
+	private int size;
+
+	/**
+	 * Instantiates a new, empty int table.
+	 */
+	public IntTable(){
+		values = new Object[16];
+	}
+
+	/**
+	 * Gets the value of an id.
+	 *
+	 * @param id the id
+	 * @return the value, or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int id){
+		if(id < 0 || id >= values.length){
+			return null;
+		}
+		return (V) values[id];
+	}
+
+	/**
+	 * Checks if an id has a value.
+	 *
+	 * @param id the id
+	 * @return true, if it has one
+	 */
+	public boolean containsKey(int id){
+		return get(id) != null;
+	}
+
+	/**
+	 * Sets the value of an id.
+	 *
+	 * @param id the id
+	 * @param value the value, not null
+	 * @return the value it replaced, or null
+	 */
+	public V put(int id, V value){
+		if(id >= values.length){
+			Object[] grown = new Object[Math.max(id + 1, values.length * 2)];
+			System.arraycopy(values, 0, grown, 0, values.length);
+			values = grown;
+		}
+		V previous = get(id);
+		values[id] = value;
+		if(previous == null){
+			size++;
+		}
+		return previous;
+	}
+
+	/**
+	 * Removes the value of an id.
+	 *
+	 * @param id the id
+	 * @return the value it had, or null
+	 */
+	public V remove(int id){
+		V previous = get(id);
+		if(previous != null){
+			values[id] = null;
+			size--;
+		}
+		return previous;
+	}
+
+	/**
+	 * Gets how many ids have a value.
+	 *
+	 * @return the size
+	 */
+	public int size(){
+		return size;
+	}
+}
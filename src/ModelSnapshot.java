@@ -0,0 +1,46 @@
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * The Class ModelSnapshot.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Every group's results, copied from IMPModel.  Immutable, so a reader can
+ * look at several groups without locking and without them changing under it.
+ *
+ */
+public class ModelSnapshot {
+
+	/** The results, by group. */
+	private final Map<String, GroupResults> results;
+
+	/**
+	 * Instantiates a new model snapshot.
+	 *
+	 * @param results the results by group; not copied, must not change afterwards
+	 */
+	ModelSnapshot(Map<String, GroupResults> results){
+		this.results = Collections.unmodifiableMap(results);
+	}
+
+	/**
+	 * Gets a group's results.
+	 *
+	 * @param group the group
+	 * @return the results, or null if none were published
+	 */
+	public GroupResults getResults(String group){
+		return results.get(group);
+	}
+
+	/**
+	 * Gets every group's results.
+	 *
+	 * @return the results, by group
+	 */
+	public Map<String, GroupResults> getAllResults(){
+		return results;
+	}
+}
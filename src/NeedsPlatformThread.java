@@ -0,0 +1,14 @@
+
+/**
+ * The Interface NeedsPlatformThread.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Marks a consumer that must be called on a platform thread even when the
+ * hub runs on virtual threads, for example one that drives java.awt.Robot.
+ * Swing components are recognised without it.
+ *
+ */
+public interface NeedsPlatformThread {
+
+}
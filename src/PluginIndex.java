@@ -0,0 +1,282 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * The Class PluginIndex.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Remembers, between launches, what the hub found in each file of the
+ * consumers directory: the file's size and modification time, the class it
+ * holds and the consumption it declares, or that it is not a consumer at all.
+ * A file whose size and time still match is not loaded, checked or constructed
+ * again.  One line per file:
+ *
+ * fileName TAB size TAB modified TAB className TAB declaration
+ *
+ * where className and declaration are empty for files that are not consumers.
+ *
+ */
+public class PluginIndex {
+
+	/** The first line of an index file, changed whenever the format does. */
+	private static final String HEADER = "IMPPluginIndex 1";
+
+	/** Separates the fields of a line. */
+	private static final String FIELD_SEPARATOR = "\t";
+
+	/** The index file. */
+	private final File indexFile;
+
+	/** The entries, by file name. */
+	private final Map<String, Entry> entries;
+
+	/** Whether entries changed since the index was read. */
+	private boolean dirty;
+
+	/**
+	 * Reads the index file, starting empty if it is missing or unreadable.
+	 *
+	 * @param indexFile the index file
+	 */
+	public PluginIndex(File indexFile){
+		this.indexFile = indexFile;
+		this.entries = new HashMap<String, Entry>();
+		load();
+	}
+
+	/**
+	 * Reads the index file.
+	 */
+	private void load(){
+		if(!indexFile.isFile()){
+			return;
+		}
+		BufferedReader reader = null;
+		try{
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
+			if(!HEADER.equals(reader.readLine())){
+				System.out.println("Plugin index "+indexFile+" is from another version, rebuilding it");
+				dirty = true;
+				return;
+			}
+			String line;
+			while((line = reader.readLine()) != null){
+				String[] fields = line.split(FIELD_SEPARATOR, -1);
+				if(fields.length != 5){
+					dirty = true;
+					continue;
+				}
+				try{
+					Entry entry = new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3], fields[4].length() == 0 ? null : fields[4]);
+					entries.put(entry.getFileName(), entry);
+				} catch (NumberFormatException e){
+					dirty = true;
+				}
+			}
+		} catch (IOException e){
+			System.out.println("Could not read plugin index "+indexFile+", rebuilding it");
+			entries.clear();
+			dirty = true;
+		} finally {
+			if(reader != null){
+				try{
+					reader.close();
+				} catch (IOException e){
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets what was recorded for a file, if the file has not changed since.
+	 *
+	 * @param file the file
+	 * @return the entry, or null if the file is new or changed
+	 */
+	public Entry lookUp(File file){
+		Entry entry = entries.get(file.getName());
+		if(entry == null || entry.getSize() != file.length() || entry.getModified() != file.lastModified()){
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Records what a file holds.
+	 *
+	 * @param file the file
+	 * @param className the consumer class, or null if it is not a consumer
+	 * @param declaration what the consumer declares, or null if it is not a consumer
+	 */
+	public void record(File file, String className, String declaration){
+		Entry entry = new Entry(file.getName(), file.length(), file.lastModified(), className == null ? "" : className, declaration);
+		entries.put(entry.getFileName(), entry);
+		dirty = true;
+	}
+
+	/**
+	 * Forgets every file that is no longer in the directory.
+	 *
+	 * @param fileNames the names of the files still there
+	 */
+	public void retain(Collection<String> fileNames){
+		Iterator<String> i = entries.keySet().iterator();
+		while(i.hasNext()){
+			if(!fileNames.contains(i.next())){
+				i.remove();
+				dirty = true;
+			}
+		}
+	}
+
+	/**
+	 * Writes the index file, if anything changed.  The file is written beside
+	 * the old one and renamed over it, so a crash never leaves half an index.
+	 */
+	public void save(){
+		if(!dirty){
+			return;
+		}
+		File temporary = new File(indexFile.getPath()+".tmp");
+		BufferedWriter writer = null;
+		try{
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+			writer.write(HEADER);
+			writer.newLine();
+			for(Entry entry : entries.values()){
+				writer.write(entry.getFileName()+FIELD_SEPARATOR+entry.getSize()+FIELD_SEPARATOR+entry.getModified()+FIELD_SEPARATOR
+						+entry.getClassName()+FIELD_SEPARATOR+(entry.getDeclaration() == null ? "" : entry.getDeclaration()));
+				writer.newLine();
+			}
+			writer.close();
+			writer = null;
+			if(!temporary.renameTo(indexFile)){
+				indexFile.delete();
+				if(!temporary.renameTo(indexFile)){
+					System.out.println("Could not write plugin index "+indexFile);
+					return;
+				}
+			}
+			dirty = false;
+		} catch (IOException e){
+			System.out.println("Could not write plugin index "+indexFile);
+			e.printStackTrace();
+		} finally {
+			if(writer != null){
+				try{
+					writer.close();
+				} catch (IOException e){
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The Class Entry.
+	 *
+	 * What one file of the consumers directory held when it was last checked.
+	 *
+	 */
+	public static class Entry {
+
+		/** The file name. */
+		private final String fileName;
+
+		/** The file size. */
+		private final long size;
+
+		/** The file modification time. */
+		private final long modified;
+
+		/** The consumer class, or "" if the file is not a consumer. */
+		private final String className;
+
+		/** What the consumer declares, or null if the file is not a consumer. */
+		private final String declaration;
+
+		/**
+		 * Instantiates a new entry.
+		 *
+		 * @param fileName the file name
+		 * @param size the file size
+		 * @param modified the file modification time
+		 * @param className the consumer class, or ""
+		 * @param declaration what the consumer declares, or null
+		 */
+		private Entry(String fileName, long size, long modified, String className, String declaration){
+			this.fileName = fileName;
+			this.size = size;
+			this.modified = modified;
+			this.className = className;
+			this.declaration = declaration;
+		}
+
+		/**
+		 * Gets the file name.
+		 *
+		 * @return the file name
+		 */
+		public String getFileName(){
+			return fileName;
+		}
+
+		/**
+		 * Gets the file size.
+		 *
+		 * @return the size
+		 */
+		public long getSize(){
+			return size;
+		}
+
+		/**
+		 * Gets the file modification time.
+		 *
+		 * @return the time
+		 */
+		public long getModified(){
+			return modified;
+		}
+
+		/**
+		 * Gets the consumer class.
+		 *
+		 * @return the class name, or "" if the file is not a consumer
+		 */
+		public String getClassName(){
+			return className;
+		}
+
+		/**
+		 * Gets what the consumer declares.
+		 *
+		 * @return the declaration, or null if the file is not a consumer
+		 */
+		public String getDeclaration(){
+			return declaration;
+		}
+
+		/**
+		 * Checks if the file holds a consumer.
+		 *
+		 * @return true, if it does
+		 */
+		public boolean isConsumer(){
+			return declaration != null;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Enumeration;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+
+/**
+ * The Class PluginJar.
+ *
+ * Property of University of Northern Iowa
+ *
+ * A consumer packaged as a jar in ./consumers, loaded by a class loader of its
+ * own so a new version of the jar can be loaded beside the old one.  The jar
+ * names its consumer class in the IMP-Consumer manifest attribute; without it
+ * the first top level class implementing ClickerConsumerInterface is used.
+ *
+ * The hub counts the instances it creates from the jar.  Once the jar is
+ * retired (replaced or deleted) and its last instance is closed, the class
+ * loader is closed so the old classes can be unloaded.
+ *
+ */
+public class PluginJar {
+
+	/** The manifest attribute naming the consumer class. */
+	public static final String CONSUMER_ATTRIBUTE = "IMP-Consumer";
+
+	/** The jar file. */
+	private final File file;
+
+	/** The jar's own class loader. */
+	private final URLClassLoader loader;
+
+	/** The consumer class, once found. */
+	private Class<? extends ClickerConsumerInterface> consumerClass;
+
+	/** Instances created from the jar and not closed yet. */
+	private int instances;
+
+	/** Whether a newer version replaced the jar, or it was deleted. */
+	private boolean retired;
+
+	/** Whether the class loader has been closed. */
+	private boolean closed;
+
+	/**
+	 * Opens a plugin jar.
+	 *
+	 * @param file the jar file
+	 * @param parent the class loader the hub's own classes come from
+	 * @throws IOException if the jar cannot be read
+	 */
+	public PluginJar(File file, ClassLoader parent) throws IOException{
+		this.file = file;
+		this.loader = new URLClassLoader(new URL[]{file.toURI().toURL()}, parent);
+	}
+
+	/**
+	 * Gets the jar's class loader.
+	 *
+	 * @return the class loader
+	 */
+	public ClassLoader getLoader(){
+		return loader;
+	}
+
+	/**
+	 * Loads a consumer class already known to be in the jar, without checking it.
+	 *
+	 * @param className the class name
+	 * @return the class
+	 * @throws ClassNotFoundException if the jar does not have it
+	 */
+	@SuppressWarnings("unchecked")
+	public Class<? extends ClickerConsumerInterface> loadConsumer(String className) throws ClassNotFoundException{
+		consumerClass = (Class<? extends ClickerConsumerInterface>) loader.loadClass(className);
+		return consumerClass;
+	}
+
+	/**
+	 * Finds the jar's consumer class.
+	 *
+	 * @return the class, or null if the jar has none
+	 * @throws IOException if the jar cannot be read
+	 */
+	@SuppressWarnings("unchecked")
+	public Class<? extends ClickerConsumerInterface> findConsumer() throws IOException{
+		JarFile jar = new JarFile(file);
+		try{
+			Manifest manifest = jar.getManifest();
+			if(manifest != null){
+				String named = manifest.getMainAttributes().getValue(new Attributes.Name(CONSUMER_ATTRIBUTE));
+				if(named != null){
+					Class<?> candidate = tryLoad(named.trim());
+					if(isConsumer(candidate)){
+						consumerClass = (Class<? extends ClickerConsumerInterface>) candidate;
+						return consumerClass;
+					}
+					System.out.println(file.getName()+" names "+named+" as its consumer, but it does not fit the necessary interface.");
+					return null;
+				}
+			}
+			Enumeration<JarEntry> entries = jar.entries();
+			while(entries.hasMoreElements()){
+				String name = entries.nextElement().getName();
+				if(!name.endsWith(".class") || name.indexOf('$') >= 0){
+					continue;
+				}
+				Class<?> candidate = tryLoad(name.substring(0, name.length() - 6).replace('/', '.'));
+				if(isConsumer(candidate)){
+					consumerClass = (Class<? extends ClickerConsumerInterface>) candidate;
+					return consumerClass;
+				}
+			}
+			return null;
+		} finally {
+			jar.close();
+		}
+	}
+
+	/**
+	 * Loads a class from the jar.
+	 *
+	 * @param className the class name
+	 * @return the class, or null if it cannot be loaded
+	 */
+	private Class<?> tryLoad(String className){
+		try{
+			return loader.loadClass(className);
+		} catch (ClassNotFoundException e){
+			return null;
+		} catch (LinkageError e){
+			return null;
+		}
+	}
+
+	/**
+	 * Checks if a class can be used as a consumer.
+	 *
+	 * @param candidate the class, may be null
+	 * @return true, if it is a concrete ClickerConsumerInterface
+	 */
+	private boolean isConsumer(Class<?> candidate){
+		return candidate != null && ClickerConsumerInterface.class.isAssignableFrom(candidate) && !Modifier.isAbstract(candidate.getModifiers());
+	}
+
+	/**
+	 * Gets the consumer class.
+	 *
+	 * @return the class, or null if it has not been found
+	 */
+	public Class<? extends ClickerConsumerInterface> getConsumerClass(){
+		return consumerClass;
+	}
+
+	/**
+	 * Counts an instance about to be created from the jar.  Count it before
+	 * constructing it, so the jar cannot be unloaded in between; if the
+	 * instance is not made after all, count it closed.
+	 *
+	 * @return false, if the class loader is already closed and nothing can be made from it
+	 */
+	public synchronized boolean instanceCreated(){
+		if(closed){
+			return false;
+		}
+		instances++;
+		return true;
+	}
+
+	/**
+	 * Counts an instance closed, closing the class loader if the jar is
+	 * retired and this was its last instance.
+	 *
+	 * @return true, if the class loader was closed
+	 */
+	public synchronized boolean instanceClosed(){
+		instances--;
+		return closeIfUnused();
+	}
+
+	/**
+	 * Marks the jar as replaced or deleted.  Its instances keep running until
+	 * their question closes; then the class loader is closed.
+	 *
+	 * @return true, if the class loader was closed
+	 */
+	public synchronized boolean retire(){
+		retired = true;
+		return closeIfUnused();
+	}
+
+	/**
+	 * Checks if the jar was replaced or deleted.
+	 *
+	 * @return true, if retired
+	 */
+	public synchronized boolean isRetired(){
+		return retired;
+	}
+
+	/**
+	 * Closes the class loader once the jar is retired and has no instances.
+	 *
+	 * @return true, if it was closed now
+	 */
+	private boolean closeIfUnused(){
+		if(!retired || instances > 0 || closed){
+			return false;
+		}
+		closed = true;
+		try{
+			loader.close();
+		} catch (IOException e){
+			e.printStackTrace();
+		}
+		System.out.println("Unloaded "+file.getName());
+		return true;
+	}
+}
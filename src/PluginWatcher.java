@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The Class PluginWatcher.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Watches the consumers directory for plugin jars being added, replaced or
+ * deleted, and remembers which ones changed.  Once the directory has been
+ * quiet for QUIET_MILLIS, so a jar still being copied is not picked up half
+ * written, the ChangeListener is told on the watcher's own thread and takes
+ * the changes with takeChanges().  Reloading a jar therefore never holds up
+ * the thread reading from the server.
+ *
+ */
+public class PluginWatcher implements Runnable {
+
+	/** How long the directory must be quiet before the changes are handed over, in milliseconds. */
+	private static final long QUIET_MILLIS = 500;
+
+	/**
+	 * The Interface ChangeListener.
+	 *
+	 * Told when jars changed.
+	 */
+	public interface ChangeListener {
+
+		/**
+		 * Called on the watcher's thread once jars changed and the directory is
+		 * quiet again.  Take the changes with takeChanges().
+		 */
+		public void pluginsChanged();
+	}
+
+	/** The directory. */
+	private final Path directory;
+
+	/** The watch service. */
+	private final WatchService watchService;
+
+	/** Names of the jars that changed since the last takeChanges(). */
+	private final Set<String> changed;
+
+	/** Told when jars changed. */
+	private final ChangeListener listener;
+
+	/**
+	 * Starts watching a directory.  Run the watcher on a thread of its own.
+	 *
+	 * @param directory the consumers directory
+	 * @param listener told when jars changed
+	 * @throws IOException if the directory cannot be watched
+	 */
+	public PluginWatcher(Path directory, ChangeListener listener) throws IOException{
+		this.directory = directory;
+		this.listener = listener;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.changed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+	}
+
+	/**
+	 * Checks if any jar changed since the last takeChanges().
+	 *
+	 * @return true, if something changed
+	 */
+	public boolean hasChanges(){
+		return !changed.isEmpty();
+	}
+
+	/**
+	 * Takes the names of the jars that changed since the last call.
+	 *
+	 * @return the jar file names
+	 */
+	public List<String> takeChanges(){
+		List<String> names = new ArrayList<String>();
+		for(String name : changed){
+			if(changed.remove(name)){
+				names.add(name);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Stops watching.
+	 */
+	public void close(){
+		try{
+			watchService.close();
+		} catch (IOException e){
+			e.printStackTrace();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try{
+			while(true){
+				WatchKey key = watchService.take();
+				while(key != null){
+					if(!collect(key)){
+						System.out.println("Stopped watching "+directory);
+						return;
+					}
+					key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				if(hasChanges()){
+					try{
+						listener.pluginsChanged();
+					} catch (RuntimeException e){
+						e.printStackTrace();
+					}
+				}
+			}
+		} catch (InterruptedException e){
+			return;
+		} catch (ClosedWatchServiceException e){
+			return;
+		}
+	}
+
+	/**
+	 * Remembers the jars a watch key reports changed.
+	 *
+	 * @param key the key
+	 * @return false, if the directory can no longer be watched
+	 */
+	private boolean collect(WatchKey key){
+		for(WatchEvent<?> event : key.pollEvents()){
+			if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+				continue;
+			}
+			String name = ((Path) event.context()).getFileName().toString();
+			if(name.endsWith(".jar")){
+				changed.add(name);
+			} else if(name.endsWith(".class") && event.kind() != StandardWatchEventKinds.ENTRY_CREATE){
+				System.out.println(name+" changed; loose class files are only reloaded on restart, package it as a jar to swap it live");
+			}
+		}
+		return key.reset();
+	}
+}
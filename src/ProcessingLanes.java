@@ -0,0 +1,389 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * The Class ProcessingLanes.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Shards group state over a fixed number of single threaded lanes.  Every
+ * group is owned by one lane, chosen from its dense group id, and everything
+ * that reads or changes the group's state (Open, answers, consumers joining,
+ * Close) runs on that lane, in the order it was routed.  A group's state is
+ * therefore only ever touched by one thread, while different groups are
+ * worked on in parallel.
+ *
+ * Answers from the server reach a lane through its FrameRing: the reading
+ * thread copies each frame into a slot and moves on, and the lane hands the
+ * slots waiting to the FrameHandler in batches.  If the ring is full the
+ * frame is spilled to an overflow queue, which the lane works through, in
+ * order, once the ring is empty.  The reading thread only waits for a lane
+ * when its overflow queue has reached its limit as well.
+ *
+ * Control frames (a question opening or closing) go through a queue of
+ * their own that the lane serves before every batch.  A control frame only
+ * overtakes answers for other groups: the group's own answers routed before
+ * it are handled first, wherever they are waiting, so a question opens and
+ * closes on time without losing its last answers.  Work from other threads,
+ * such as a consumer joining, goes through execute() and is not ordered
+ * with the frames.
+ *
+ */
+public class ProcessingLanes {
+
+	/**
+	 * How long an idle lane sleeps before looking again, in nanoseconds.  New
+	 * work wakes the lane straight away, so this is only a backstop and idle
+	 * lanes cost next to nothing.
+	 */
+	private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/** How long the reading thread waits before looking again at a lane whose overflow queue is full, in nanoseconds. */
+	private static final long FULL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	/** The most answers a lane handles before looking at its control frames again. */
+	private static final int MAX_BATCH = 256;
+
+	/** How many times its ring capacity a lane may spill by default. */
+	public static final int DEFAULT_SPILL_FACTOR = 16;
+
+	/**
+	 * The Interface FrameHandler.
+	 *
+	 * Processes the frames routed to the lanes, on the lane that owns the group.
+	 */
+	public interface FrameHandler {
+
+		/**
+		 * Called for each frame, in the order it was routed.  The slot is only
+		 * valid during the call.
+		 *
+		 * @param slot the frame
+		 */
+		public void frameRouted(FrameRing.Slot slot);
+	}
+
+	/** The lanes. */
+	private final Lane[] lanes;
+
+	/** How many answers can wait in each lane's overflow queue. */
+	private final int spillLimit;
+
+	/**
+	 * Starts the lanes.
+	 *
+	 * @param count how many lanes
+	 * @param ringCapacity how many frames can wait for each lane
+	 * @param spillLimit how many more frames can wait for each lane once its ring is full
+	 * @param handler processes the frames
+	 */
+	public ProcessingLanes(int count, int ringCapacity, int spillLimit, FrameHandler handler){
+		this.spillLimit = Math.max(1, spillLimit);
+		lanes = new Lane[Math.max(1, count)];
+		for(int i = 0; i < lanes.length; i++){
+			lanes[i] = new Lane(new FrameRing(ringCapacity), handler);
+			lanes[i].thread = HubThreads.newLaneThread(i, lanes[i]);
+			lanes[i].thread.start();
+		}
+	}
+
+	/**
+	 * Gets the lane that owns a group.
+	 *
+	 * @param group the group's id
+	 * @return the lane number
+	 */
+	public int laneOf(int group){
+		return group % lanes.length;
+	}
+
+	/**
+	 * Routes a frame to the lane that owns its group, after every frame routed
+	 * before it.  Only the thread reading from the server may call this.
+	 *
+	 * @param kind what kind of frame it is
+	 * @param group the group's id
+	 * @param name the group name
+	 * @param attachment what goes with the frame, may be null
+	 * @param frame the frame's text, copied into the ring; may be null
+	 */
+	public void route(int kind, int group, String name, Object attachment, CharSequence frame){
+		int index = laneOf(group);
+		Lane lane = lanes[index];
+		//once anything is spilled, later frames follow it until the lane catches up
+		FrameRing.Slot slot = lane.spill.isEmpty() ? lane.ring.tryClaim() : null;
+		if(slot != null){
+			slot.set(kind, group, name, attachment, frame);
+			slot.setSequence(lane.routed++);
+			lane.ring.publish();
+		} else {
+			waitForSpill(index);
+			slot = new FrameRing.Slot();
+			slot.set(kind, group, name, attachment, frame);
+			slot.setSequence(lane.routed++);
+			lane.spill.add(slot);
+			lane.spilled.incrementAndGet();
+			int waiting = lane.spillSize.incrementAndGet();
+			if(waiting > lane.spillHighWater){
+				lane.spillHighWater = waiting;
+			}
+			if(waiting >= lane.spillWarning){
+				System.out.println("Lane "+index+" has "+waiting+" answers waiting past its ring");
+				lane.spillWarning *= 2;
+			}
+		}
+		lane.wake();
+	}
+
+	/**
+	 * Waits, if a lane's overflow queue is full, until the lane has worked
+	 * some of it off.
+	 *
+	 * @param index the lane number
+	 */
+	private void waitForSpill(int index){
+		Lane lane = lanes[index];
+		if(lane.spillSize.get() < spillLimit){
+			return;
+		}
+		if(lane.fullWaits.getAndIncrement() == 0){
+			System.out.println("Lane "+index+" has "+spillLimit+" answers waiting past its ring, waiting for it");
+		}
+		while(lane.spillSize.get() >= spillLimit){
+			lane.wake();
+			LockSupport.parkNanos(this, FULL_NANOS);
+		}
+	}
+
+	/**
+	 * Routes a control frame to the lane that owns its group, ahead of the
+	 * answers waiting there for other groups; the group's own answers routed
+	 * before it are handled first.  Control frames keep their order among
+	 * themselves.  Only the thread reading from the server may call this.
+	 *
+	 * @param kind what kind of frame it is
+	 * @param group the group's id
+	 * @param name the group name
+	 * @param attachment what goes with the frame, may be null
+	 */
+	public void routeControl(int kind, int group, String name, Object attachment){
+		Lane lane = lanes[laneOf(group)];
+		FrameRing.Slot slot = new FrameRing.Slot();
+		slot.set(kind, group, name, attachment, null);
+		//answers routed from here on come after it
+		slot.setSequence(lane.routed);
+		lane.control.add(slot);
+		lane.wake();
+	}
+
+	/**
+	 * Runs a task on the lane that owns a group.  Any thread may call this.
+	 *
+	 * @param group the group's id
+	 * @param task the task
+	 */
+	public void execute(int group, Runnable task){
+		Lane lane = lanes[laneOf(group)];
+		lane.tasks.add(task);
+		lane.wake();
+	}
+
+	/**
+	 * Describes how full each lane's ring is, for the log.
+	 *
+	 * @return the statistics
+	 */
+	public String getStatistics(){
+		StringBuilder statistics = new StringBuilder();
+		for(int i = 0; i < lanes.length; i++){
+			FrameRing ring = lanes[i].ring;
+			statistics.append(i == 0 ? "" : " ").append("lane").append(i).append('=').append(ring.getOccupancy())
+				.append('/').append(ring.getCapacity()).append(" max=").append(ring.getHighWater())
+				.append(" spilled=").append(lanes[i].spilled.get()).append(" spillMax=").append(lanes[i].spillHighWater)
+				.append(" full=").append(lanes[i].fullWaits.get());
+		}
+		return statistics.toString();
+	}
+
+	/**
+	 * The Class Lane.
+	 *
+	 * One lane: its queues and the thread that works through them.
+	 *
+	 */
+	private static class Lane implements Runnable {
+
+		/** The answers routed to the lane. */
+		private final FrameRing ring;
+
+		/** Answers routed while the ring was full, in order. */
+		private final Queue<FrameRing.Slot> spill;
+
+		/** How many answers were ever spilled. */
+		private final AtomicLong spilled;
+
+		/** How many spilled answers are waiting. */
+		private final AtomicInteger spillSize;
+
+		/** The most spilled answers ever waiting at once. */
+		private volatile int spillHighWater;
+
+		/** How many spilled answers waiting at once are logged next, doubling each time; only touched by the reading thread. */
+		private int spillWarning;
+
+		/** How many times the reading thread waited for the lane's overflow queue. */
+		private final AtomicLong fullWaits;
+
+		/** How many answers were ever routed to the lane; only touched by the reading thread. */
+		private long routed;
+
+		/** Control frames, served before any answer. */
+		private final Queue<FrameRing.Slot> control;
+
+		/** Tasks from other threads. */
+		private final Queue<Runnable> tasks;
+
+		/** Processes the frames. */
+		private final FrameHandler handler;
+
+		/** The lane's thread. */
+		private Thread thread;
+
+		/** Whether the lane is asleep, or about to be, waiting for work. */
+		private volatile boolean sleeping;
+
+		/**
+		 * Instantiates a new lane.
+		 *
+		 * @param ring the ring
+		 * @param handler processes the frames
+		 */
+		private Lane(FrameRing ring, FrameHandler handler){
+			this.ring = ring;
+			this.spill = new ConcurrentLinkedQueue<FrameRing.Slot>();
+			this.spilled = new AtomicLong();
+			this.spillSize = new AtomicInteger();
+			this.spillWarning = ring.getCapacity();
+			this.fullWaits = new AtomicLong();
+			this.control = new ConcurrentLinkedQueue<FrameRing.Slot>();
+			this.tasks = new ConcurrentLinkedQueue<Runnable>();
+			this.handler = handler;
+		}
+
+		/**
+		 * Hands a frame to the handler, unless it was handled already.
+		 *
+		 * @param slot the frame
+		 */
+		private void handle(FrameRing.Slot slot){
+			if(slot.isHandled()){
+				return;
+			}
+			try{
+				handler.frameRouted(slot);
+			} catch (RuntimeException e){
+				e.printStackTrace();
+			}
+			slot.clear();
+		}
+
+		/**
+		 * Handles a group's answers routed before a control frame, wherever
+		 * they are waiting, leaving the other groups' answers where they are.
+		 *
+		 * @param control the control frame
+		 */
+		private void handleEarlier(FrameRing.Slot control){
+			int available = ring.available();
+			for(int i = 0; i < available; i++){
+				FrameRing.Slot slot = ring.getSlot(i);
+				if(slot.getSequence() >= control.getSequence()){
+					return;
+				}
+				if(slot.getGroup() == control.getGroup()){
+					handle(slot);
+				}
+			}
+			//spilled answers all came after the ones in the ring
+			for(FrameRing.Slot slot : spill){
+				if(slot.getSequence() >= control.getSequence()){
+					return;
+				}
+				if(slot.getGroup() == control.getGroup()){
+					handle(slot);
+				}
+			}
+		}
+
+		/**
+		 * Checks if the lane has nothing to do.
+		 *
+		 * @return true, if idle
+		 */
+		private boolean isIdle(){
+			return control.isEmpty() && tasks.isEmpty() && ring.isEmpty() && spill.isEmpty();
+		}
+
+		/**
+		 * Wakes the lane if it is waiting for work.
+		 */
+		private void wake(){
+			if(sleeping){
+				LockSupport.unpark(thread);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			while(true){
+				boolean worked = false;
+				FrameRing.Slot slot;
+				while((slot = control.poll()) != null){
+					worked = true;
+					handleEarlier(slot);
+					handle(slot);
+				}
+				Runnable task;
+				while((task = tasks.poll()) != null){
+					worked = true;
+					try{
+						task.run();
+					} catch (RuntimeException e){
+						e.printStackTrace();
+					}
+				}
+				int batch = Math.min(ring.available(), MAX_BATCH);
+				if(batch > 0){
+					worked = true;
+					for(int i = 0; i < batch; i++){
+						handle(ring.getSlot(i));
+					}
+					ring.release(batch);
+				} else {
+					//spilled answers came after everything in the ring, so only once it is empty
+					for(int i = 0; i < MAX_BATCH && (slot = spill.poll()) != null; i++){
+						worked = true;
+						spillSize.decrementAndGet();
+						handle(slot);
+					}
+				}
+				if(!worked){
+					//set before looking again: whoever adds work after this sees it and unparks the lane
+					sleeping = true;
+					if(isIdle()){
+						LockSupport.parkNanos(this, IDLE_NANOS);
+					}
+					sleeping = false;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,22 @@
+
+/**
+ * The Interface ReusableConsumer.
+ *
+ * Property of University of Northern Iowa
+ *
+ * A consumer the hub may keep after its question closes and hand to a later
+ * question of the same group, instead of building a new one.  When the
+ * question closes the hub calls reset() rather than setActiveStatus(false);
+ * the next question calls setID(), setQuestion() and setActiveStatus(true)
+ * again.  setActiveStatus(false) is still called when the hub finally lets
+ * the consumer go.
+ *
+ */
+public interface ReusableConsumer {
+
+	/**
+	 * Gets the consumer ready for another question: hide any window without
+	 * disposing it, and forget the answers of the last question.
+	 */
+	public void reset();
+}
@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The Class SymbolTable.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Gives each identifier (a group ID, a participant name) a dense int the
+ * first time it is seen, so the hub can keep its state in arrays indexed by
+ * that int instead of maps keyed by the string.  Identifiers are hashed once,
+ * when they are looked up; everything after works on the int.  Ids are never
+ * reused while the table lives.
+ *
+ * Not thread safe: the hub's group ids are only interned and looked up by the
+ * thread reading from the server, and a GroupAnswers' tables by its lane.
+ *
+ */
+public class SymbolTable {
+
+	/** Returned by lookUp() for an identifier that has not been interned. */
+	public static final int NOT_FOUND = -1;
+
+	/** The ids, by identifier. */
+	private final Map<String, Integer> ids;
+
+	/** The identifiers, by id. */
+	private final ArrayList<String> names;
+
+	/**
+	 * Instantiates a new, empty symbol table.
+	 */
+	public SymbolTable(){
+		ids = new HashMap<String, Integer>();
+		names = new ArrayList<String>();
+	}
+
+	/**
+	 * Gets the id of an identifier, giving it the next id if it has none yet.
+	 *
+	 * @param name the identifier
+	 * @return the id
+	 */
+	public int intern(String name){
+		Integer id = ids.get(name);
+		if(id == null){
+			id = names.size();
+			names.add(name);
+			ids.put(name, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the id of an identifier without interning it.
+	 *
+	 * @param name the identifier
+	 * @return the id, or NOT_FOUND
+	 */
+	public int lookUp(String name){
+		Integer id = ids.get(name);
+		return id == null ? NOT_FOUND : id;
+	}
+
+	/**
+	 * Gets the identifier an id was given to.
+	 *
+	 * @param id the id
+	 * @return the identifier
+	 */
+	public String getName(int id){
+		return names.get(id);
+	}
+
+	/**
+	 * Gets how many identifiers have been interned; ids run from 0 to size() - 1.
+	 *
+	 * @return the size
+	 */
+	public int size(){
+		return names.size();
+	}
+}
@@ -0,0 +1,42 @@
+
+/**
+ * The Interface TypedClickerConsumer.
+ *
+ * Property of University of Northern Iowa
+ *
+ * Version 2 of the consumer interface.  Instead of nested string maps through
+ * inputData(), a typed consumer gets read-only views it can use without
+ * parsing: counts by label ordinal, averages as doubles, and answer records.
+ * The views are shared with other consumers and must not be kept past the
+ * next delivery if the consumer needs them to stay current.
+ *
+ * Consumers that only implement ClickerConsumerInterface keep working: the
+ * hub wraps them in a ClickerConsumerAdapter, which turns each view back into
+ * the map inputData() expects.  A consumer can extend ClickerConsumerAdapter
+ * and override one callback at a time to move over.
+ *
+ */
+public interface TypedClickerConsumer extends ClickerConsumerInterface {
+
+	/**
+	 * Called with the group's counts, for Count consumers.
+	 *
+	 * @param counts the counts
+	 */
+	public void countsChanged(CountSnapshot counts);
+
+	/**
+	 * Called with the group's averages, for Avg consumers.
+	 *
+	 * @param averages the averages
+	 */
+	public void averagesChanged(AverageSnapshot averages);
+
+	/**
+	 * Called with a participant's answers, for All consumers.  The record
+	 * also holds what the participant had answered before.
+	 *
+	 * @param answer the answers
+	 */
+	public void answerReceived(AnswerRecord answer);
+}